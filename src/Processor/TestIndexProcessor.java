@@ -0,0 +1,235 @@
+package Processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.Trees;
+
+/*
+ * TestIndexProcessor
+ *
+ * Annotation processor that writes Tests/TestIndex.tsv while the tests are compiled: one line for every
+ * concrete subclass of MyTest, with its category (package), tags (from @TestTags) and description (from
+ * giveTestDescription(), when it returns a constant string). Classes named Template_*, like
+ * Template_MyTest, are scaffolds to copy rather than tests, and are left out. TestIndex reads the file
+ * at startup, so the runner can find and filter tests without scanning the classpath or loading every
+ * class.
+ *
+ * Build this directory first, into its own jar (it has its own META-INF/services entry), then put that
+ * jar on the processor path when compiling the tests:
+ *
+ *   javac -d processor Processor/TestIndexProcessor.java
+ *   jar cf processor.jar -C processor . -C Processor META-INF
+ *   javac -processorpath processor.jar -d out <test sources>
+ *
+ * The index only lists the classes in the compilation that wrote it, so it should be written by a full
+ * build rather than an incremental one.
+ */
+
+@SupportedAnnotationTypes("*")
+public class TestIndexProcessor extends AbstractProcessor {
+
+	private final static String BASE_CLASS = "Tests.MyTest";    // Tests must extend this
+	private final static String TAGS_ANNOTATION = "Tests.TestTags"; // Annotation holding a test's tags
+	private final static String PACKAGE_PREFIX = "Tests.";      // Left out of categories and test names
+	private final static String TEMPLATE_PREFIX = "Template_";  // Scaffold classes, not indexed
+
+	private TreeMap<String, String> lines = new TreeMap<String, String>(); // Index line for each test, by class name
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	/*
+	 * Collects the tests in each round, and writes the index once there are no rounds left
+	 */
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement base = processingEnv.getElementUtils().getTypeElement(BASE_CLASS);
+		if (base == null) {
+			return false; // Not compiling the tests
+		}
+
+		for (Element element : roundEnv.getRootElements()) {
+			collect(element, base);
+		}
+
+		if (roundEnv.processingOver() && !lines.isEmpty()) {
+			writeIndex();
+		}
+		return false;
+	}
+
+	/* Adds the element to the index if it's a test, then does the same for its nested classes */
+	private void collect(Element element, TypeElement base) {
+		if (element.getKind() != ElementKind.CLASS) {
+			return;
+		}
+		TypeElement type = (TypeElement) element;
+		if (!type.getModifiers().contains(Modifier.ABSTRACT)
+				&& type.getModifiers().contains(Modifier.PUBLIC)
+				&& !type.equals(base)
+				&& !type.getSimpleName().toString().startsWith(TEMPLATE_PREFIX)
+				&& processingEnv.getTypeUtils().isSubtype(type.asType(), base.asType())) {
+			String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+			lines.put(className, className
+					+ "\t" + getCategory(type)
+					+ "\t" + String.join(",", getTags(type))
+					+ "\t" + escape(getDescription(type)));
+		}
+		for (Element enclosed : type.getEnclosedElements()) {
+			if (enclosed.getModifiers().contains(Modifier.STATIC)) {
+				collect(enclosed, base);
+			}
+		}
+	}
+
+	/* Writes every collected test to Tests/TestIndex.tsv in the class output directory */
+	private void writeIndex() {
+		try {
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "Tests", "TestIndex.tsv");
+			try (Writer writer = file.openWriter()) {
+				writer.write("# class\tcategory\ttags\tdescription\n");
+				for (String line : lines.values()) {
+					writer.write(line + "\n");
+				}
+			}
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Wrote test index with " + lines.size() + " tests");
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write test index: " + e.getMessage());
+		}
+	}
+
+	/* Gets the category of a test, which is its package without the Tests. prefix */
+	private String getCategory(TypeElement type) {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		String name = pkg.getQualifiedName().toString();
+		if (name.equals("Tests")) {
+			return "";
+		}
+		return (name.startsWith(PACKAGE_PREFIX) ? name.substring(PACKAGE_PREFIX.length()) : name);
+	}
+
+	/* Gets the tags from a test's @TestTags, if it has one */
+	private List<String> getTags(TypeElement type) {
+		ArrayList<String> tags = new ArrayList<String>();
+		for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			if (!annotationType.getQualifiedName().contentEquals(TAGS_ANNOTATION)) {
+				continue;
+			}
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation.getElementValues().entrySet()) {
+				Object tagValues = value.getValue().getValue();
+				if (tagValues instanceof List) {
+					for (Object tag : (List<?>) tagValues) {
+						tags.add(((AnnotationValue) tag).getValue().toString().trim());
+					}
+				}
+				else {
+					tags.add(tagValues.toString().trim()); // A single tag, written without braces
+				}
+			}
+		}
+		return tags;
+	}
+
+	/*
+	 * Gets a test's description from its giveTestDescription(), if that method is a single return of
+	 * string literals joined with + (nl is read as a space). Other descriptions can only be found by
+	 * running the test, so they are left empty. Looks at superclasses if the test doesn't have its own.
+	 */
+	private String getDescription(TypeElement type) {
+		Trees trees;
+		try {
+			trees = Trees.instance(processingEnv);
+		} catch (IllegalArgumentException e) {
+			return ""; // Not running inside javac
+		}
+
+		TypeElement current = type;
+		while (current != null && !current.getQualifiedName().contentEquals(BASE_CLASS)) {
+			for (Element enclosed : current.getEnclosedElements()) {
+				if (enclosed.getKind() == ElementKind.METHOD
+						&& enclosed.getSimpleName().contentEquals("giveTestDescription")
+						&& ((ExecutableElement) enclosed).getParameters().isEmpty()) {
+					MethodTree method = trees.getTree((ExecutableElement) enclosed);
+					String description = (method == null ? null : getReturnedConstant(method.getBody()));
+					return (description == null ? "" : description);
+				}
+			}
+			TypeMirror superclass = current.getSuperclass();
+			current = (superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null);
+		}
+		return "";
+	}
+
+	/* Returns the string a method body returns, if the body is a single return of a constant string */
+	private static String getReturnedConstant(BlockTree body) {
+		if (body == null || body.getStatements().size() != 1) {
+			return null;
+		}
+		StatementTree statement = body.getStatements().get(0);
+		if (statement.getKind() != Tree.Kind.RETURN) {
+			return null;
+		}
+		return evaluate(((ReturnTree) statement).getExpression());
+	}
+
+	/* Evaluates string literals joined with +, or returns null for anything else */
+	private static String evaluate(ExpressionTree expression) {
+		switch (expression.getKind()) {
+			case STRING_LITERAL:
+				return (String) ((LiteralTree) expression).getValue();
+			case PARENTHESIZED:
+				return evaluate(((ParenthesizedTree) expression).getExpression());
+			case IDENTIFIER:
+				return (((IdentifierTree) expression).getName().contentEquals("nl") ? " " : null);
+			case PLUS:
+				String left = evaluate(((BinaryTree) expression).getLeftOperand());
+				String right = evaluate(((BinaryTree) expression).getRightOperand());
+				return (left == null || right == null ? null : left + right);
+			default:
+				return null;
+		}
+	}
+
+	/* Escapes tabs, newlines and backslashes, so each test stays on one line */
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "");
+	}
+}
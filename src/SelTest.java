@@ -3,14 +3,31 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
-import Tests.MyTotalTime;
+import Tests.AsyncLogWriter;
+import Tests.DriverPool;
+import Tests.DriverPrelauncher;
+import Tests.JUnitXmlSink;
+import Tests.JsonLinesSink;
+import Tests.LogOutputService;
 import Tests.NamedResult;
+import Tests.PhaseTimer;
+import Tests.ResultsLogFilter;
+import Tests.ResultsLogMerger;
+import Tests.ResultsLogModel;
+import Tests.ResultsLogPipeline;
 import Tests.ResultsLogWriter;
+import Tests.RunDashboard;
+import Tests.RunContext;
+import Tests.RunHistory;
+import Tests.RunOptions;
+import Tests.TestExecutor;
+import Tests.TestIndex;
+import Tests.TestScheduler;
+import Tests.TestSharder;
 import Tests.Control.*;
 
-import org.junit.runner.JUnitCore;
-
 /*
  * Handles the main execution of tests and calls to ResultsLogWriter.
  */
@@ -18,7 +35,10 @@ import org.junit.runner.JUnitCore;
 @SuppressWarnings({ "rawtypes" })
 public class SelTest {
 
-	private final static int PREFIX_LENGTH = 12; // Length of the prefix for test names
+	private final static int HISTORY_WINDOW = 20; // Number of recent runs used for the median time taken
+	
+	private static LinkedHashMap<String, Class[]> suites // Suites added by name, each gets its own result log
+		= new LinkedHashMap<String, Class[]>();
 	
 	public static void main(String[] args) throws IOException, InterruptedException {
 
@@ -27,80 +47,218 @@ public class SelTest {
 		String space = "&nbsp;";        // Appropriate space character for corresponding file type
 		String font = "Consolas";       // Selected font for ResultsLogFull
 
+		// Read settings for this run, such as the number of tests to run at once. Stops on settings
+		// that can't be fixed up, like a bad --shard, rather than running the wrong tests.
+		RunOptions options;
+		try {
+			options = new RunOptions(args);
+		} catch (IllegalArgumentException e) {
+			System.out.println("Usage error: " + e.getMessage());
+			System.exit(2);
+			return;
+		}
+
+		// Timing and log directory for this run
+		RunContext context = new RunContext();
+
 		// Create lists for tests and results
 		HashMap<Class, NamedResult> results = new HashMap<Class, NamedResult>();
 		ArrayList<Class> tests = new ArrayList<Class>();
 
 		/* Add tests to the test list */
 		
-		// Control tests, demonstrate different test outcomes
-		addControls(tests);
+		// Take the tests from the test index written at build time, if selected (such as with --tags
+		// or --package). Otherwise run the tests added by hand below.
+		TestIndex index = (options.useTestIndex() ? TestIndex.load() : null);
+		if (index != null) {
+			tests.addAll(TestIndex.loadClasses(index.select(options.getTags(), options.getPackages())));
+			System.out.println("Selected " + tests.size() + " of " + index.size() + " tests from the test index");
+		}
+		else {
+			if (options.useTestIndex()) {
+				System.out.println("No test index found, using the tests added by hand. Compile the tests with "
+						+ "TestIndexProcessor to write one.");
+			}
+			
+			// Control tests, demonstrate different test outcomes
+			addControls(tests);
+			
+			if (options.hasTestFilter()) {
+				tests.removeIf(test -> !TestIndex.matches(test, options.getTags(), options.getPackages()));
+			}
+		}
 
-		// Creates spaceBuffer, for formatting in ResultsLogFull
-		int spaceBuffer = 0;
-		for (Class test : tests) {
-			String testName = test.toString().substring(PREFIX_LENGTH);
-			if (testName.length() > spaceBuffer) {
-				spaceBuffer = testName.length();
+		// Only rerun the tests that failed in a previous run, if selected. The previous results are kept
+		// for the combined result logs.
+		ResultsLogMerger previousRun = null;
+		if (options.rerunFailed()) {
+			previousRun = new ResultsLogMerger();
+			try {
+				previousRun.addDirectory(options.getRerunDirectory());
+			} catch (IllegalArgumentException e) {
+				System.out.println("Usage error: " + e.getMessage());
+				System.exit(2);
 			}
+			previousRun.retainFailed(tests);
+		}
+		
+		// Open the run history, if selected with --history. Used to split and order the tests, and updated
+		// as they finish. Without it, sharded runs split the tests by hash.
+		RunHistory history = (options.useHistory() ? new RunHistory(options.getHistoryPath()) : null);
+		
+		// Keep only this machine's share of the tests, if the run is split across machines
+		TestSharder sharder = null;
+		if (options.isSharded()) {
+			sharder = new TestSharder(options.getShardIndex(), options.getShardCount(), history);
+			tests.retainAll(sharder.select(tests));
+			System.out.println(sharder.getSummary());
 		}
-		spaceBuffer += 3;
 
-		// Create a directory for files, if none exists
+		// Creates spaceBuffer, for formatting in ResultsLogFull
+		int spaceBuffer = getSpaceBuffer(tests);
+
+		// Create a directory for files, if none exists. Each shard gets its own.
 		String resultsFilename = "ResultsLogFull" + fileExtension;
 		System.out.print("\n\nCreating " + resultsFilename + "... ");
-		Path myPath = Paths.get(System.getProperty("user.dir") + "/TestLogs" + MyTotalTime.get());
+		Path myPath = Paths.get(context.getLogRoot());
+		if (sharder != null) {
+			myPath = myPath.resolve(sharder.getDirectoryName());
+		}
+		context.setLogRoot(myPath.toString());
+		context.setDriverProfile(options.getDriverProfile());
 		File directory = new File(myPath.toString());
 		if (!directory.exists()) {
 			directory.mkdirs();
 		}
+		if (sharder != null) {
+			sharder.writeManifest(myPath.toString() + "/ShardManifest.json");
+		}
 		
 		// Create file for results, updates with links and results as tests run
-		FileWriter resultsLogFull = new FileWriter(myPath.toString() + "/" + resultsFilename);
+		AsyncLogWriter resultsLogFull = LogOutputService.get().open(myPath.toString() + "/" + resultsFilename);
 		System.out.println("Done");
 		resultsLogFull.write("<div style=\"font-family: " + font + "\">");
 		resultsLogFull.write("<h1>ResultsLogFull</h1>");
 		resultsLogFull.flush();
 		
-		// Init start time for tests
-		MyTotalTime.initStartEpoch();
+		// Turn on driver reuse between tests, if selected
+		DriverPool.configure(options.useDriverPool(), options.getDriverMaxUses());
+
+		// Run and print test results to console and ResultsLogFull. Results are handed back in
+		// test list order, even when running tests in parallel.
+		TestExecutor executor = new TestExecutor(options.getThreads());
+		executor.setRunContext(context);
+		executor.setRetryPolicy(options.createRetryPolicy());
+		
+		// Write machine-readable results as each test finishes
+		JsonLinesSink jsonResults = new JsonLinesSink(myPath.toString() + "/Results.jsonl", fileExtension);
+		JUnitXmlSink xmlResults = new JUnitXmlSink(myPath.toString() + "/Results.xml");
+		executor.addListener(jsonResults);
+		executor.addListener(xmlResults);
+		
+		// Record each test's duration and outcome in the run history, if selected. A sharded run only
+		// reads the history, as it must stay the same on every machine.
+		if (history != null && sharder == null) {
+			executor.addListener(history);
+		}
+		
+		// Order the tests from their recorded durations and outcomes, if selected
+		TestScheduler scheduler = new TestScheduler(options.getSchedule(), history);
+		ArrayList<Class> schedule = scheduler.order(tests);
+		System.out.println(scheduler.getSummary(tests.size()));
+		resultsLogFull.write(scheduler.getSummary(tests.size()) + nl + nl);
+		
+		// Launch drivers for upcoming tests in the background while tests run, if selected
+		if (options.usePrelaunch()) {
+			DriverPrelauncher prelauncher = new DriverPrelauncher(schedule, options.getDriverProfile(),
+					options.getThreads(), context.getLogRoot());
+			context.setPrelauncher(prelauncher);
+			prelauncher.start();
+		}
+		
+		// Start the live dashboard, if selected
+		RunDashboard dashboard = null;
+		if (options.useDashboard()) {
+			dashboard = new RunDashboard(options.getDashboardPort());
+			dashboard.start(tests.size());
+			executor.addListener(dashboard);
+		}
 		
-		// Run and print test results to console and ResultsLogFull
-		for (Class test : tests) {	
-			// Gets tests name
-			String testName = test.toString().substring(PREFIX_LENGTH);
-			System.out.println("Starting test " + testName);
+		try {
+			executor.run(schedule, (test, result) -> {
+				// Gets tests name
+				String testName = result.getName();
 			
-			// Runs tests and stores result as a NamedResult
-			results.put(test, new NamedResult(testName, JUnitCore.runClasses(test)));
+				// Stores result
+				results.put(test, result);
 			
-			// Create and write link to test log for ResultLogFull
-			String link = "./";
-			link += testName.replace('.', '/') + fileExtension;
-			resultsLogFull.write("<a href=\"" + link + "\">" + testName + "</a>");
+				// Create and write link to test log for ResultLogFull
+				String link = "./";
+				link += testName.replace('.', '/') + fileExtension;
+				resultsLogFull.write("<a href=\"" + link + "\">" + testName + "</a>");
 			
-			// Formatting stuff
-			for (int j = testName.length(); j < spaceBuffer; j++) {
-				resultsLogFull.write(space);
-			}
+				// Formatting stuff
+				for (int j = testName.length(); j < spaceBuffer; j++) {
+					resultsLogFull.write(space);
+				}
 
-			// Writes result to ResultLogFull
-			if (results.get(test).wasSuccessful()) {
-				resultsLogFull.write(space + "<span style=\"color: #0A0\">SUCCESSFUL</span>" + nl);
-			} else {
-				resultsLogFull.write(space + "<span style=\"color: #F00\">FAILED</span>" + nl);
+				// Writes result to ResultLogFull
+				if (result.wasSuccessful()) {
+					resultsLogFull.write(space + "<span style=\"color: #0A0\">SUCCESSFUL</span>");
+				} else {
+					resultsLogFull.write(space + "<span style=\"color: #F00\">FAILED</span>");
+				}
+			
+				// Writes time taken, and the median time taken over recent runs
+				resultsLogFull.write(space + space + PhaseTimer.formatMillis(result.getDuration()));
+				if (history != null) {
+					long median = history.getDurationPercentile(testName, 50, HISTORY_WINDOW);
+					resultsLogFull.write(" (median of last " + HISTORY_WINDOW + " runs: " + PhaseTimer.formatMillis(median) + ")");
+				}
+			
+				// Writes each earlier attempt, with a link to its test log, if the test was retried
+				for (NamedResult attempt : result.getPreviousAttempts()) {
+					resultsLogFull.write(space + space + "<a href=\"./" + attempt.getLogPath()
+							+ TestExecutor.getAttemptSuffix(attempt.getAttempt()) + fileExtension + "\">attempt "
+							+ attempt.getAttempt() + "</a> FAILED " + PhaseTimer.formatMillis(attempt.getDuration()));
+				}
+				if (result.isFlaky()) {
+					resultsLogFull.write(space + space + "<span style=\"color: #C80\">FLAKY</span>");
+				}
+				resultsLogFull.write(nl);
+			
+				resultsLogFull.flush();
+			});
+		} finally {
+			// Finish the machine-readable results and run history
+			jsonResults.close();
+			xmlResults.close();
+			if (history != null) {
+				history.close();
 			}
 			
-			resultsLogFull.flush();
+			// Quit any drivers left in the pool or launched ahead but never used, and tell the dashboard the run is over
+			if (context.getPrelauncher() != null) {
+				context.getPrelauncher().shutdown();
+			}
+			DriverPool.shutdown();
+			if (dashboard != null) {
+				dashboard.stop();
+			}
 		}
 		
+		// Write speedup compared to running tests one at a time
+		System.out.println("Run summary: " + executor.getSpeedupSummary());
+		resultsLogFull.write(nl + "<strong>Run summary: " + executor.getSpeedupSummary() + "</strong>" + nl);
+		
 		// Close file and exit
 		System.out.println("Closing " + resultsFilename + "... ");
 		resultsLogFull.write("</ div>");
+		resultsLogFull.sync();
 		resultsLogFull.close();
 		
 		// Init end time
-		MyTotalTime.initEndEpoch();
+		context.finish();
 
 		// Print test results summary to console
 		for (Class test : tests) {
@@ -117,19 +275,50 @@ public class SelTest {
 			}
 		}
 
+		// Build the categories once, shared by every result log
+		ResultsLogModel model = new ResultsLogModel(tests, results);
+		model.setTimeTaken(context.getTimeLength());
+		TestExecutor.addRunStatistics(model, executor, history, context);
+		ResultsLogPipeline pipeline = new ResultsLogPipeline(model, true);
+		
 		// Write result log with passed and failed tests
-		ResultsLogWriter resultLog = new ResultsLogWriter(myPath.toString(), "ResultsLog", fileExtension, false);
-		resultLog.writeResults(tests, results);
+		pipeline.add(new ResultsLogWriter(myPath.toString(), "ResultsLog", fileExtension, false));
 		
 		// Write result log with failed tests only
-		ResultsLogWriter resultLogFail = new ResultsLogWriter(myPath.toString(), "ResultsLogFail", fileExtension, true);
-		resultLogFail.writeResults(tests, results);
+		pipeline.add(new ResultsLogWriter(myPath.toString(), "ResultsLogFail", fileExtension, true));
+		
+		// Write a result log for each named suite
+		for (String suiteName : suites.keySet()) {
+			pipeline.add(new ResultsLogWriter(myPath.toString(), "ResultsLog" + suiteName, fileExtension,
+					ResultsLogFilter.forSuite(suites.get(suiteName))));
+		}
+		pipeline.writeAll();
+		
+		// Write result logs with the new results in place of the previous run's, if rerunning failed tests
+		if (previousRun != null) {
+			previousRun.overlay(tests, results);
+			previousRun.write(myPath.toString(), "ResultsLogCombined");
+		}
 
 		// Print some summary information to console
 		System.out.println("Done");
 		System.out.println("\nExiting program");
 		System.out.println("Working directory was: " + System.getProperty("user.dir"));		
-		System.out.println("Time taken was: " + MyTotalTime.getTimeLength());
+		System.out.println("Time taken was: " + context.getTimeLength());
+	}
+
+	/*
+	 * Gets the length of the longest test name plus some padding, used for aligning results
+	 */
+	private static int getSpaceBuffer(ArrayList<Class> tests) {
+		int spaceBuffer = 0;
+		for (Class test : tests) {
+			String testName = TestExecutor.getTestName(test);
+			if (testName.length() > spaceBuffer) {
+				spaceBuffer = testName.length();
+			}
+		}
+		return spaceBuffer + 3;
 	}
 
 	/*
@@ -142,6 +331,14 @@ public class SelTest {
 		}
 	}
 	
+	/*
+	 * Same as above, but also writes a separate result log for the suite, named ResultsLog<suiteName>
+	 */
+	public static void addSuite(ArrayList<Class> tests, Class[] classes, String suiteName) {
+		addSuite(tests, classes);
+		suites.put(suiteName, classes);
+	}
+	
 	/* Add control tests */
 	public static void addControls(ArrayList<Class> tests) {
 		tests.add(ControlFail.class);
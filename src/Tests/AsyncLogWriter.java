@@ -0,0 +1,109 @@
+package Tests;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/*
+ * AsyncLogWriter
+ *
+ * Writer for a single log file, created by LogOutputService. Text is collected locally and handed to
+ * the service's I/O thread in large chunks, so write() and flush() never touch the disk.
+ *
+ *   flush() - hands everything written so far to the I/O thread, without waiting
+ *   sync()  - waits until everything written so far is forced to disk (a durability point)
+ *   close() - waits until everything written so far is written, then closes the file
+ */
+
+public class AsyncLogWriter extends Writer {
+
+	private final static int CHUNK_SIZE = 64 * 1024; // # of characters collected before handing off
+
+	private LogOutputService service;                // Service whose I/O thread does the writing
+	private FileChannel channel;                     // File being written to
+	private Charset charset;                         // Encoding for the file
+	private StringBuilder pending                    // Text not yet handed to the I/O thread
+		= new StringBuilder();
+	private boolean closed = false;                  // True once close() has been called
+	private volatile IOException failure;            // First error from the I/O thread, if any
+
+	/* Constructor, use LogOutputService.open() */
+	AsyncLogWriter(LogOutputService service, FileChannel channel, Charset charset) {
+		this.service = service;
+		this.channel = channel;
+		this.charset = charset;
+	}
+
+	public synchronized void write(char[] cbuf, int off, int len) throws IOException {
+		ensureOpen();
+		pending.append(cbuf, off, len);
+		if (pending.length() >= CHUNK_SIZE) {
+			handOff();
+		}
+	}
+
+	public synchronized void write(String str, int off, int len) throws IOException {
+		ensureOpen();
+		pending.append(str, off, off + len);
+		if (pending.length() >= CHUNK_SIZE) {
+			handOff();
+		}
+	}
+
+	/* Hands buffered text to the I/O thread without waiting for it to be written */
+	public synchronized void flush() throws IOException {
+		ensureOpen();
+		handOff();
+	}
+
+	/* Waits until everything written so far has been forced to disk */
+	public synchronized void sync() throws IOException {
+		ensureOpen();
+		handOff();
+		service.submitAndWait(this, LogOutputService.SYNC);
+	}
+
+	/* Waits until everything written so far has been written, then closes the file */
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		handOff();
+		closed = true;
+		service.submitAndWait(this, LogOutputService.CLOSE);
+		checkFailure();
+	}
+
+	/* Passes the pending text to the service */
+	private void handOff() throws IOException {
+		if (pending.length() == 0) {
+			return;
+		}
+		byte[] data = pending.toString().getBytes(charset);
+		pending.setLength(0);
+		service.submit(this, data);
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Log writer is closed");
+		}
+		checkFailure();
+	}
+
+	/* Rethrows an error from the I/O thread on the writing thread */
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw new IOException("Log output failed", failure);
+		}
+	}
+
+	/* Used by LogOutputService */
+	FileChannel getChannel() { return channel; }
+	void setFailure(IOException e) {
+		if (failure == null) {
+			failure = e;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package Tests;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * CommandLatency
+ *
+ * Time taken by each type of WebDriver command (findElement, executeScript, get, etc.), as one
+ * LatencyHistogram per command. MyChromeDriver keeps one for the test using it, and the runners add
+ * up every test's into one for the whole run.
+ */
+
+public class CommandLatency {
+
+	private HashMap<String, LatencyHistogram> commands // Histogram for each command, hashed by command name
+		= new HashMap<String, LatencyHistogram>();
+
+	/* Records how long a command took, in nanoseconds */
+	public synchronized void record(String command, long nanos) {
+		LatencyHistogram histogram = commands.get(command);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			commands.put(command, histogram);
+		}
+		histogram.record(nanos);
+	}
+
+	/* Adds every command in another CommandLatency to this one */
+	public synchronized void add(CommandLatency other) {
+		for (Map.Entry<String, LatencyHistogram> entry : other.copy().commands.entrySet()) {
+			LatencyHistogram histogram = commands.get(entry.getKey());
+			if (histogram == null) {
+				histogram = new LatencyHistogram();
+				commands.put(entry.getKey(), histogram);
+			}
+			histogram.add(entry.getValue());
+		}
+	}
+
+	/* Adds up the timings recorded by each test, for the whole run */
+	public static CommandLatency total(Collection<NamedResult> results) {
+		CommandLatency total = new CommandLatency();
+		for (NamedResult result : results) {
+			if (result.getRecord() != null && result.getRecord().getCommandLatency() != null) {
+				total.add(result.getRecord().getCommandLatency());
+			}
+		}
+		return total;
+	}
+
+	/* Returns a copy, so a driver's timings can be kept after the driver moves on to another test */
+	public synchronized CommandLatency copy() {
+		CommandLatency copy = new CommandLatency();
+		for (Map.Entry<String, LatencyHistogram> entry : commands.entrySet()) {
+			LatencyHistogram histogram = new LatencyHistogram();
+			histogram.add(entry.getValue());
+			copy.commands.put(entry.getKey(), histogram);
+		}
+		return copy;
+	}
+
+	/* Clears every command, such as when a pooled driver is given to a new test */
+	public synchronized void reset() {
+		commands.clear();
+	}
+
+	/* Returns true if no commands have been recorded */
+	public synchronized boolean isEmpty() {
+		return commands.isEmpty();
+	}
+
+	/*
+	 * Returns the timings as an HTML table, one row per command, most total time first. Times are in
+	 * milliseconds.
+	 */
+	public synchronized String getReport() {
+		ArrayList<String> names = new ArrayList<String>(commands.keySet());
+		Collections.sort(names, (a, b) -> {
+			int byTotal = Long.compare(commands.get(b).getSum(), commands.get(a).getSum());
+			return (byTotal != 0 ? byTotal : a.compareTo(b));
+		});
+
+		StringBuilder report = new StringBuilder();
+		report.append("<table style=\"font-family: Consolas\"><tr><th align=\"left\">Command</th><th>Count</th>"
+				+ "<th>Total ms</th><th>p50 ms</th><th>p95 ms</th><th>p99 ms</th><th>Max ms</th></tr>");
+		for (String name : names) {
+			LatencyHistogram histogram = commands.get(name);
+			report.append("<tr><td>").append(name).append("</td>")
+				  .append(cell(String.valueOf(histogram.getCount())))
+				  .append(cell(millis(histogram.getSum())))
+				  .append(cell(millis(histogram.getPercentile(50))))
+				  .append(cell(millis(histogram.getPercentile(95))))
+				  .append(cell(millis(histogram.getPercentile(99))))
+				  .append(cell(millis(histogram.getMax())))
+				  .append("</tr>");
+		}
+		report.append("</table>");
+		return report.toString();
+	}
+
+	/* Formats microseconds as milliseconds */
+	private static String millis(long micros) {
+		return String.format("%.1f", micros / 1000.0);
+	}
+
+	/* Formats a right-aligned table cell */
+	private static String cell(String value) {
+		return "<td align=\"right\">" + value + "</td>";
+	}
+}
@@ -3,6 +3,7 @@ package Tests.Control;
 import static org.junit.Assert.fail;
 
 import Tests.MyTest;
+import Tests.TestTags;
 
 /*
  * ControlFailTest
@@ -10,6 +11,7 @@ import Tests.MyTest;
  * Demonstrates what a test log for a failed test looks like.
  */
 
+@TestTags({ "control", "fail" })
 public class ControlFail extends MyTest {
 	
 	public String giveTestDescription() {
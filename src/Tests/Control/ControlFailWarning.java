@@ -3,6 +3,7 @@ package Tests.Control;
 import static org.junit.Assert.fail;
 
 import Tests.MyTest;
+import Tests.TestTags;
 
 /*
  * ControlFailTest
@@ -10,6 +11,7 @@ import Tests.MyTest;
  * Demonstrates what a test log for a failed test with a warning looks like.
  */
 
+@TestTags({ "control", "fail", "warning" })
 public class ControlFailWarning extends MyTest {
 	
 	public String giveTestDescription() {
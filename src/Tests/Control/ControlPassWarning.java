@@ -1,6 +1,7 @@
 package Tests.Control;
 
 import Tests.MyTest;
+import Tests.TestTags;
 
 /*
  * ControlFailTest
@@ -8,6 +9,7 @@ import Tests.MyTest;
  * Demonstrates what a test log for a passed test with a warning looks like.
  */
 
+@TestTags({ "control", "pass", "warning" })
 public class ControlPassWarning extends MyTest {
 	
 	public String giveTestDescription() {
@@ -0,0 +1,176 @@
+package Tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+
+/*
+ * DomWaiter
+ *
+ * Waits for conditions on the page (an element shown or hidden, text appearing, the title changing)
+ * from inside the browser. WebDriverWait asks the browser every 500ms, which costs a round trip each
+ * time and notices changes up to half a second late. DomWaiter makes one call to the page's helper
+ * library (see PageHelpers) that checks the condition, then watches the page with a MutationObserver
+ * and returns as soon as a change makes the condition true:
+ *
+ *   waiter.waitFor(10000, DomWaiter.visible(By.id("ui-id-1")), DomWaiter.textPresent(By.xpath(item), name));
+ *
+ * Every condition given must hold at once. Changes that don't touch the DOM, like a CSS transition
+ * finishing, are caught by also checking every CHECK_INTERVAL ms inside the page, which costs no round
+ * trips.
+ *
+ * If the page navigates away during a wait, the wait is lost with it, so it is started again on the
+ * new page (installing the helper library there first), after a short wait that doubles each time.
+ * Other driver errors, like a closed window or a dead session, are thrown straight away. Throws
+ * TimeoutException, like WebDriverWait, if the conditions don't hold in time.
+ */
+
+public class DomWaiter {
+
+	private final static long MAX_SCRIPT_WAIT = 20000; // Longest a single script waits, under chromedriver's 30s script timeout
+	private final static long CHECK_INTERVAL = 100;    // How often the page checks conditions without a DOM change, in milliseconds
+	private final static long INITIAL_DELAY = 10;      // First wait before starting again on a new page, in milliseconds
+	private final static long MAX_DELAY = 200;         // Longest wait before starting again on a new page, in milliseconds
+
+	private final static String[] PAGE_CHANGED_ERRORS = { // Parts of the errors drivers give when the page is unloaded mid-script
+		"document unloaded", "Document was unloaded", "Execution context was destroyed", "Cannot find context with specified id" };
+
+	private PageHelpers helpers;       // Runs the waits in the browser
+	private long waits = 0;            // # of calls to waitFor()
+
+	/* Constructor */
+	public DomWaiter(JavascriptExecutor js) {
+		this.helpers = new PageHelpers(js);
+	}
+
+	/* Condition, the element is found and shown */
+	public static Condition visible(By locator) {
+		return new Condition("visible", locator, "", "visibility of " + locator);
+	}
+
+	/* Condition, the element is missing or hidden */
+	public static Condition invisible(By locator) {
+		return new Condition("invisible", locator, "", "invisibility of " + locator);
+	}
+
+	/* Condition, the element is found and its text contains the given text */
+	public static Condition textPresent(By locator, String text) {
+		return new Condition("text", locator, text, "text \"" + text + "\" in " + locator);
+	}
+
+	/* Condition, the page's title is exactly the given title */
+	public static Condition title(String title) {
+		return new Condition("title", null, title, "title \"" + title + "\"");
+	}
+
+	/*
+	 * Waits up to timeoutMillis for every condition to hold at once. Throws TimeoutException if they
+	 * don't.
+	 */
+	public void waitFor(long timeoutMillis, Condition... conditions) {
+		waits++;
+		ArrayList<List<String>> arguments = new ArrayList<List<String>>();
+		for (Condition condition : conditions) {
+			arguments.add(Arrays.asList(condition.type, condition.locatorType, condition.locatorValue, condition.text));
+		}
+
+		long deadline = System.nanoTime() + timeoutMillis * 1000000;
+		WebDriverException lastError = null;
+		int pageChanges = 0;
+		while (true) {
+			long remaining = (deadline - System.nanoTime()) / 1000000;
+			try {
+				Object result = helpers.callAsync("waitFor", arguments, Math.max(0, Math.min(remaining, MAX_SCRIPT_WAIT)), CHECK_INTERVAL);
+				if (result instanceof Map && Boolean.TRUE.equals(((Map<?, ?>) result).get("ok"))) {
+					return;
+				}
+			} catch (TimeoutException | ScriptTimeoutException e) {
+				lastError = e; // Script timed out in the driver, try again if there's time left
+			} catch (WebDriverException e) {
+				if (!isPageChange(e)) {
+					throw e;
+				}
+				lastError = e; // Page navigated away during the wait, start again on the new page
+				if (!sleep(Math.min(MAX_DELAY, INITIAL_DELAY << Math.min(pageChanges++, 16)), deadline)) {
+					throw e;
+				}
+			}
+
+			if (remaining <= 0 || System.nanoTime() >= deadline) {
+				throw new TimeoutException("Timed out after " + timeoutMillis + "ms waiting for " + describe(conditions), lastError);
+			}
+		}
+	}
+
+	/* Returns true if the error means the page changed while the script ran, rather than a real failure */
+	private static boolean isPageChange(WebDriverException e) {
+		if (e instanceof StaleElementReferenceException) {
+			return true;
+		}
+		String message = String.valueOf(e.getMessage());
+		for (String error : PAGE_CHANGED_ERRORS) {
+			if (message.contains(error)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Sleeps for delayMillis, or until the deadline if sooner. Returns false, keeping the thread's
+	 * interrupt, if interrupted.
+	 */
+	private static boolean sleep(long delayMillis, long deadline) {
+		long sleepMillis = Math.min(delayMillis, Math.max(0, (deadline - System.nanoTime()) / 1000000));
+		try {
+			Thread.sleep(sleepMillis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/* Returns the # of waits, and the # of round trips they took */
+	public String getStatistics() {
+		return waits + " waits, " + helpers.getRoundTrips() + " round trips";
+	}
+
+	/* Describes the conditions for errors, such as "visibility of By.id: menu and title "Home"" */
+	private static String describe(Condition[] conditions) {
+		StringBuilder description = new StringBuilder();
+		for (int i = 0; i < conditions.length; i++) {
+			description.append(i == 0 ? "" : " and ").append(conditions[i].description);
+		}
+		return description.toString();
+	}
+
+	/*
+	 * A condition checked in the page
+	 */
+	public static class Condition {
+		private String type;         // visible, invisible, text or title
+		private String locatorType;  // How the element is found, such as id or xpath, empty for title
+		private String locatorValue; // What to find, such as the id, empty for title
+		private String text;         // Text or title to look for, empty for other conditions
+		private String description;  // Describes the condition for errors
+
+		/* Constructor */
+		private Condition(String type, By locator, String text, String description) {
+			String[] parsed = (locator == null ? new String[] { "", "" } : JsLocator.parse(locator));
+			this.type = type;
+			this.locatorType = parsed[0];
+			this.locatorValue = parsed[1];
+			this.text = (text == null ? "" : text);
+			this.description = description;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package Tests;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.WebDriverException;
+
+/*
+ * DriverPool
+ *
+ * Leases MyChromeDriver instances to tests, so Chrome doesn't have to be launched and closed for
+ * every single test. Drivers are reset when they are returned to the pool (extra windows closed,
+ * frames left, cookies and storage cleared, page blanked), checked for a live session when they are
+ * leased, and quit once they have been used a set number of times. Drivers are only handed to tests
+ * that asked for the same DriverProfile they were launched with.
+ *
+ * The pool is static, as tests are created by JUnit and can't be handed a pool directly. It is off
+ * by default, in which case MyTest creates and quits a driver for every test as before.
+ */
+
+public class DriverPool {
+
+	private static boolean enabled = false; // If false, tests create their own drivers
+	private static int maxUses = 20;        // Number of leases before a driver is quit and replaced
+
+	private static EnumMap<DriverProfile, ArrayDeque<MyChromeDriver>> idle // Drivers waiting to be leased, by profile
+		= new EnumMap<DriverProfile, ArrayDeque<MyChromeDriver>>(DriverProfile.class);
+	private static IdentityHashMap<MyChromeDriver, Integer> uses      // Number of times each driver was leased
+		= new IdentityHashMap<MyChromeDriver, Integer>();
+
+	private static AtomicLong leases = new AtomicLong();             // Total number of leases
+	private static AtomicLong hits = new AtomicLong();               // Leases given an existing driver
+	private static AtomicLong misses = new AtomicLong();             // Leases that had to launch a new driver
+	private static AtomicLong deadReplaced = new AtomicLong();       // Drivers found dead and discarded
+	private static AtomicLong recycled = new AtomicLong();           // Drivers quit after reaching maxUses
+	private static AtomicLong leaseWaitNanos = new AtomicLong();     // Total time spent inside lease()
+	private static AtomicLong maxLeaseWaitNanos = new AtomicLong();  // Longest time spent inside lease()
+
+	/*
+	 * Turns the pool on or off, and sets how many times a driver can be leased before it is replaced
+	 */
+	public static void configure(boolean enabled, int maxUses) {
+		DriverPool.enabled = enabled;
+		DriverPool.maxUses = (maxUses < 1 ? 1 : maxUses);
+	}
+
+	public static boolean isEnabled() { return enabled; }
+
+	/*
+	 * Returns a clean, live driver with the default profile
+	 */
+	public static MyChromeDriver lease() {
+		return lease(DriverProfile.FAITHFUL);
+	}
+
+	/*
+	 * Returns a clean, live driver launched with the given profile. Reuses an idle driver if there is
+	 * one, otherwise launches a new one.
+	 */
+	public static MyChromeDriver lease(DriverProfile profile) {
+		long start = System.nanoTime();
+		leases.incrementAndGet();
+
+		MyChromeDriver driver = null;
+		while ((driver = pollIdle(profile)) != null) {
+			if (isAlive(driver)) {
+				hits.incrementAndGet();
+				break;
+			}
+			System.out.println("Pooled driver session is dead, replacing");
+			deadReplaced.incrementAndGet();
+			discard(driver);
+		}
+
+		if (driver == null) {
+			misses.incrementAndGet();
+			driver = DriverPrelauncher.launch(profile);
+		}
+
+		// Counters and timings in the test log only cover the test that leased the driver
+		driver.getRetryEngine().reset();
+		driver.getCommandLatency().reset();
+
+		synchronized (DriverPool.class) {
+			Integer count = uses.get(driver);
+			uses.put(driver, (count == null ? 1 : count + 1));
+		}
+
+		long elapsed = System.nanoTime() - start;
+		leaseWaitNanos.addAndGet(elapsed);
+		maxLeaseWaitNanos.accumulateAndGet(elapsed, Math::max);
+		return driver;
+	}
+
+	/*
+	 * Returns a driver to the pool. Drivers that have reached maxUses, or can't be reset, are quit instead.
+	 */
+	public static void release(MyChromeDriver driver) {
+		int count;
+		synchronized (DriverPool.class) {
+			Integer used = uses.get(driver);
+			count = (used == null ? maxUses : used);
+		}
+
+		if (count >= maxUses) {
+			recycled.incrementAndGet();
+			discard(driver);
+			return;
+		}
+
+		try {
+			reset(driver);
+		} catch (WebDriverException e) {
+			System.out.println("Could not reset pooled driver, discarding: " + e.getClass().getSimpleName());
+			deadReplaced.incrementAndGet();
+			discard(driver);
+			return;
+		}
+
+		synchronized (DriverPool.class) {
+			ArrayDeque<MyChromeDriver> drivers = idle.get(driver.getProfile());
+			if (drivers == null) {
+				drivers = new ArrayDeque<MyChromeDriver>();
+				idle.put(driver.getProfile(), drivers);
+			}
+			drivers.push(driver);
+		}
+	}
+
+	/*
+	 * Quits every idle driver. Should be called once all tests have finished.
+	 */
+	public static void shutdown() {
+		ArrayList<MyChromeDriver> drivers;
+		synchronized (DriverPool.class) {
+			drivers = new ArrayList<MyChromeDriver>();
+			for (ArrayDeque<MyChromeDriver> profileDrivers : idle.values()) {
+				drivers.addAll(profileDrivers);
+			}
+			idle.clear();
+		}
+		for (MyChromeDriver driver : drivers) {
+			discard(driver);
+		}
+	}
+
+	/*
+	 * Returns a one line summary of the pool's hit/miss and lease wait metrics
+	 */
+	public static String getStatistics() {
+		long total = leases.get();
+		double hitRate = (total == 0 ? 0 : 100.0 * hits.get() / total);
+		long averageWait = (total == 0 ? 0 : leaseWaitNanos.get() / total / 1000000);
+
+		return "leases " + total
+			 + ", hits " + hits.get()
+			 + ", misses " + misses.get()
+			 + " (hit rate " + String.format("%.1f", hitRate) + "%)"
+			 + ", dead replaced " + deadReplaced.get()
+			 + ", recycled " + recycled.get()
+			 + ", lease wait total " + PhaseTimer.formatMillis(leaseWaitNanos.get() / 1000000)
+			 + ", average " + averageWait + "ms"
+			 + ", max " + (maxLeaseWaitNanos.get() / 1000000) + "ms";
+	}
+
+	/* Takes the most recently returned idle driver with the profile, or null if there are none */
+	private static synchronized MyChromeDriver pollIdle(DriverProfile profile) {
+		ArrayDeque<MyChromeDriver> drivers = idle.get(profile);
+		return (drivers == null ? null : drivers.poll());
+	}
+
+	/* Checks that the driver's session still responds */
+	private static boolean isAlive(MyChromeDriver driver) {
+		try {
+			driver.getWindowHandles();
+			return true;
+		} catch (WebDriverException e) {
+			return false;
+		}
+	}
+
+	/*
+	 * Clears session state left behind by the previous test. Cookies and storage can only be cleared
+	 * for the page the driver is currently on, which is the last page the previous test visited.
+	 */
+	private static void reset(MyChromeDriver driver) {
+		// Close any extra windows, and go back to the first one
+		Set<String> handles = driver.getWindowHandles();
+		String first = handles.iterator().next();
+		for (String handle : handles) {
+			if (!handle.equals(first)) {
+				driver.switchTo().window(handle);
+				driver.close();
+			}
+		}
+		driver.switchTo().window(first);
+		driver.switchTo().defaultContent();
+
+		// Clear cookies and storage, then leave the page
+		driver.manage().deleteAllCookies();
+		driver.executeScript("try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+		driver.get("about:blank");
+		driver.manage().window().setSize(MyChromeDriver.WINDOW_SIZE);
+	}
+
+	/* Quits a driver and forgets about it, ignoring errors from dead sessions */
+	private static void discard(MyChromeDriver driver) {
+		synchronized (DriverPool.class) {
+			uses.remove(driver);
+		}
+		try {
+			driver.quit();
+		} catch (WebDriverException e) {
+			System.out.println("Driver was already closed");
+		}
+	}
+}
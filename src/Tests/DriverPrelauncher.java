@@ -0,0 +1,226 @@
+package Tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.WebDriverException;
+
+/*
+ * DriverPrelauncher
+ *
+ * Launches drivers for upcoming tests in the background while the current tests run, so a test's
+ * setUp usually finds its driver already started instead of waiting for Chrome to launch. Drivers are
+ * launched in schedule order, with the right DriverProfile for each test, and only a few at a time
+ * (one per worker thread): each time a test takes its driver, the driver for the next test in line is
+ * started.
+ *
+ * Also creates every test log directory up front, in the background, before the first test needs it.
+ *
+ * Launch time the tests didn't have to wait for is counted as hidden, and reported in the result logs.
+ * When DriverPool is on, only leases that can't reuse a pooled driver take a pre-launched one, so the
+ * drivers launched ahead of the last few tests may never be used; they are quit at the end of the run.
+ */
+
+@SuppressWarnings("rawtypes")
+public class DriverPrelauncher {
+
+	private int ahead;                                   // Most drivers launched ahead of time at once
+	private ArrayDeque<DriverProfile> upcoming           // Profiles for the tests without a driver launched yet, in schedule order
+		= new ArrayDeque<DriverProfile>();
+	private ArrayList<Launch> launches                   // Drivers launched ahead of time, not yet taken
+		= new ArrayList<Launch>();
+	private ArrayList<String> logDirectories             // Test log directories to create up front
+		= new ArrayList<String>();
+	private ExecutorService launcher;                    // Threads launching drivers in the background
+	private boolean stopped = false;                     // If true, no more drivers are launched
+
+	private AtomicInteger prelaunched = new AtomicInteger(); // # of drivers launched ahead of time
+	private AtomicInteger used = new AtomicInteger();        // # of those taken by a test
+	private AtomicInteger inline = new AtomicInteger();      // # of drivers launched on the test's own thread instead
+	private AtomicLong launchNanos = new AtomicLong();        // Time spent launching drivers that were taken
+	private AtomicLong waitNanos = new AtomicLong();          // Time tests spent waiting for those drivers
+
+	/*
+	 * Constructor, for running the scheduled tests with the run's profile (unless a test chooses its
+	 * own), with test logs under logRoot
+	 */
+	public DriverPrelauncher(List<Class> schedule, DriverProfile runProfile, int ahead, String logRoot) {
+		this.ahead = (ahead < 1 ? 1 : ahead);
+		TreeSet<String> directories = new TreeSet<String>();
+		for (Class test : schedule) {
+			upcoming.add(DriverProfile.forTest(test, runProfile));
+			directories.add(logRoot + "/" + getLogDirectory(test));
+		}
+		logDirectories.addAll(directories);
+		launcher = Executors.newFixedThreadPool(this.ahead, r -> {
+			Thread thread = new Thread(r, "SelTest-prelaunch");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/*
+	 * Creates the test log directories, and starts launching drivers for the first tests
+	 */
+	public synchronized void start() {
+		launcher.submit(() -> {
+			for (String directory : logDirectories) {
+				try {
+					Files.createDirectories(Paths.get(directory));
+				} catch (IOException e) {
+					// The test will try again when it creates its log, and report the problem then
+				}
+			}
+			return null;
+		});
+		fill();
+	}
+
+	/*
+	 * Returns a driver for the current thread's run: a pre-launched one if the run has a prelauncher,
+	 * otherwise a newly launched one
+	 */
+	public static MyChromeDriver launch(DriverProfile profile) {
+		DriverPrelauncher prelauncher = RunContext.current().getPrelauncher();
+		return (prelauncher != null ? prelauncher.take(profile) : new MyChromeDriver(profile));
+	}
+
+	/*
+	 * Returns a driver with the given profile, waiting for it to finish launching if needed. Launches
+	 * one on this thread if none were launched ahead of time, or the launch failed.
+	 */
+	public MyChromeDriver take(DriverProfile profile) {
+		Launch launch = null;
+		synchronized (this) {
+			Iterator<Launch> iterator = launches.iterator();
+			while (iterator.hasNext()) {
+				Launch next = iterator.next();
+				if (next.profile == profile) {
+					iterator.remove();
+					launch = next;
+					break;
+				}
+			}
+			fill();
+		}
+
+		if (launch != null) {
+			long start = System.nanoTime();
+			try {
+				MyChromeDriver driver = launch.driver.get();
+				waitNanos.addAndGet(System.nanoTime() - start);
+				launchNanos.addAndGet(launch.nanos);
+				used.incrementAndGet();
+				return driver;
+			} catch (ExecutionException e) {
+				System.out.println("Pre-launched driver failed to start, launching another: " + e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new WebDriverException("Interrupted while waiting for a pre-launched driver", e);
+			}
+		}
+
+		inline.incrementAndGet();
+		return new MyChromeDriver(profile);
+	}
+
+	/*
+	 * Stops launching drivers, and quits any that were launched but never taken. Should be called once
+	 * all tests have finished.
+	 */
+	public void shutdown() {
+		ArrayList<Launch> unused;
+		synchronized (this) {
+			stopped = true;
+			upcoming.clear();
+			unused = new ArrayList<Launch>(launches);
+			launches.clear();
+		}
+		for (Launch launch : unused) {
+			try {
+				launch.driver.get().quit();
+			} catch (ExecutionException e) {
+				// Never started, so there is nothing to quit
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (WebDriverException e) {
+				System.out.println("Driver was already closed");
+			}
+		}
+		launcher.shutdownNow();
+	}
+
+	/*
+	 * Returns a one line summary of how many drivers were launched ahead of time, and how much of their
+	 * startup time the tests didn't have to wait for
+	 */
+	public String getStatistics() {
+		long launched = launchNanos.get();
+		long hidden = Math.max(0, launched - waitNanos.get());
+		double hiddenShare = (launched == 0 ? 0 : 100.0 * hidden / launched);
+		return "pre-launched " + prelaunched.get()
+			 + ", used " + used.get()
+			 + ", unused " + (prelaunched.get() - used.get())
+			 + ", launched by the test " + inline.get()
+			 + ", startup hidden " + PhaseTimer.formatNanos(hidden)
+			 + " of " + PhaseTimer.formatNanos(launched)
+			 + " (" + String.format("%.1f", hiddenShare) + "%)";
+	}
+
+	/* Gets the time tests didn't have to wait for their driver to launch, in nanoseconds */
+	public long getHiddenNanos() {
+		return Math.max(0, launchNanos.get() - waitNanos.get());
+	}
+
+	/* Starts launching drivers for upcoming tests, until there are enough launched ahead */
+	private synchronized void fill() {
+		while (!stopped && launches.size() < ahead && !upcoming.isEmpty()) {
+			Launch launch = new Launch(upcoming.poll());
+			launch.driver = launcher.submit(() -> {
+				long start = System.nanoTime();
+				MyChromeDriver driver = new MyChromeDriver(launch.profile);
+				launch.nanos = System.nanoTime() - start;
+				return driver;
+			});
+			launches.add(launch);
+			prelaunched.incrementAndGet();
+		}
+	}
+
+	/* Gets a test's log directory under the log root, the same as MyTest does, such as Control */
+	private static String getLogDirectory(Class test) {
+		String[] className = test.getName().split("\\.");
+		String path = "";
+		for (int i = 1; i <= className.length - 2; i++) {
+			path += className[i];
+			if (i != className.length - 2) path += "/";
+		}
+		return path;
+	}
+
+	/*
+	 * A driver launched, or being launched, ahead of time
+	 */
+	private static class Launch {
+		DriverProfile profile;          // Profile the driver is launched with
+		Future<MyChromeDriver> driver;  // The driver, once it has launched
+		volatile long nanos;            // Time the launch took
+
+		Launch(DriverProfile profile) {
+			this.profile = profile;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package Tests;
+
+import java.util.HashMap;
+
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+/*
+ * DriverProfile
+ *
+ * Settings Chrome is launched with. FAITHFUL is a normal headed Chrome, the same as a person would
+ * use. FAST trades faithfulness for speed, for tests that only check behaviour:
+ *
+ *   - headless, so no window has to be drawn
+ *   - eager page loading, so get() returns once the page is parsed instead of waiting for every image
+ *     and stylesheet
+ *   - images turned off, and pages asked to skip animations (prefers-reduced-motion)
+ *   - background networking, extensions, sync and other extras turned off
+ *
+ * Tests that depend on images, layout or animations finishing should stay on FAITHFUL.
+ *
+ * The profile for a run is set with --driver-profile, and a test class can choose its own with
+ * @UseDriverProfile.
+ */
+
+public enum DriverProfile {
+	FAST("fast"),
+	FAITHFUL("faithful");
+
+	private String label; // Name used on the command line and in test logs
+
+	DriverProfile(String label) {
+		this.label = label;
+	}
+
+	public String getLabel() { return label; }
+
+	/* Finds a profile by its label, or returns null if there is none */
+	public static DriverProfile forLabel(String label) {
+		for (DriverProfile profile : values()) {
+			if (profile.label.equalsIgnoreCase(label.trim())) {
+				return profile;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Returns the profile a test class should run with: the one it chose with @UseDriverProfile, or the
+	 * run's profile if it didn't choose one
+	 */
+	public static DriverProfile forTest(Class<?> test, DriverProfile runProfile) {
+		UseDriverProfile choice = test.getAnnotation(UseDriverProfile.class);
+		return (choice != null ? choice.value() : runProfile);
+	}
+
+	/* Creates the options Chrome is launched with for this profile */
+	public ChromeOptions createOptions() {
+		ChromeOptions options = new ChromeOptions();
+		if (this == FAITHFUL) {
+			return options;
+		}
+
+		options.setHeadless(true);
+		options.setPageLoadStrategy(PageLoadStrategy.EAGER);
+		options.addArguments(
+				"--window-size=" + MyChromeDriver.WINDOW_SIZE.getWidth() + "," + MyChromeDriver.WINDOW_SIZE.getHeight(),
+				"--blink-settings=imagesEnabled=false",
+				"--force-prefers-reduced-motion",
+				"--disable-smooth-scrolling",
+				"--disable-background-networking",
+				"--disable-background-timer-throttling",
+				"--disable-renderer-backgrounding",
+				"--disable-extensions",
+				"--disable-component-update",
+				"--disable-default-apps",
+				"--disable-sync",
+				"--no-first-run",
+				"--mute-audio");
+
+		// Also blocks images through content settings, which covers images added after the page loads
+		HashMap<String, Object> prefs = new HashMap<String, Object>();
+		prefs.put("profile.managed_default_content_settings.images", 2);
+		options.setExperimentalOption("prefs", prefs);
+		return options;
+	}
+}
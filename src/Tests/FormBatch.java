@@ -0,0 +1,171 @@
+package Tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebElement;
+
+/*
+ * FormBatch
+ *
+ * Queues field assignments, clears and element lookups, and runs them all in a single call to the
+ * page's helper library (see PageHelpers). Filling a form one field at a time costs a round trip to
+ * the browser (or more) per field, so a 40 field form is 100+ round trips; as a batch it is one.
+ *
+ *   FormBatch batch = newFormBatch();
+ *   batch.set("firstName", "Sam");
+ *   batch.clear("middleName");
+ *   FormBatch.Item save = batch.lookup(By.xpath("//button[text()='Save']"));
+ *   runFormBatch(batch);
+ *   save.getElement().click();
+ *
+ * Every item is run even if an earlier one fails, and each gets its own result. Setting or clearing a
+ * field changes its value directly (the same as fillAutocomplete) and fires a change event, but no key
+ * events, so autocomplete dropdowns don't open. Fields that need typing should use sendKeys instead.
+ *
+ * Elements can be found by id, name, class name, tag name, CSS selector or XPath. The first matching
+ * element is used.
+ */
+
+public class FormBatch {
+
+	private final static String SET = "set";       // Action, sets a field's value
+	private final static String CLEAR = "clear";   // Action, clears a field's value
+	private final static String LOOKUP = "lookup"; // Action, finds an element
+
+	private PageHelpers helpers;                   // Runs the batch in the browser
+	private ArrayList<Item> items                  // Queued items, in the order they were added
+		= new ArrayList<Item>();
+	private boolean ran = false;                   // If true, the batch has been run and can't be added to
+
+	/* Constructor */
+	public FormBatch(JavascriptExecutor js) {
+		this.helpers = new PageHelpers(js);
+	}
+
+	/* Queues setting the value of the field with the given id */
+	public Item set(String fieldId, String value) {
+		return set(By.id(fieldId), value);
+	}
+
+	/* Queues setting the value of the field found by the locator */
+	public Item set(By locator, String value) {
+		return add(SET, locator, value);
+	}
+
+	/* Queues clearing the field with the given id */
+	public Item clear(String fieldId) {
+		return clear(By.id(fieldId));
+	}
+
+	/* Queues clearing the field found by the locator */
+	public Item clear(By locator) {
+		return add(CLEAR, locator, "");
+	}
+
+	/* Queues finding an element. Once the batch has run, the item holds the element. */
+	public Item lookup(By locator) {
+		return add(LOOKUP, locator, "");
+	}
+
+	/*
+	 * Runs every queued item in one round trip to the browser, and returns the items with their
+	 * results. A batch can only be run once.
+	 */
+	public List<Item> run() {
+		if (ran) {
+			throw new IllegalStateException("FormBatch has already been run");
+		}
+		ran = true;
+		if (items.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		ArrayList<List<String>> arguments = new ArrayList<List<String>>();
+		for (Item item : items) {
+			arguments.add(Arrays.asList(item.action, item.locatorType, item.locatorValue, item.value));
+		}
+
+		Object returned = helpers.call("batch", arguments);
+		List<?> results = (returned instanceof List ? (List<?>) returned : Collections.emptyList());
+		for (int i = 0; i < items.size(); i++) {
+			Item item = items.get(i);
+			if (i >= results.size() || !(results.get(i) instanceof Map)) {
+				item.error = "No result returned for item";
+				continue;
+			}
+			Map<?, ?> result = (Map<?, ?>) results.get(i);
+			if (Boolean.TRUE.equals(result.get("ok"))) {
+				item.ok = true;
+				item.element = (result.get("element") instanceof WebElement ? (WebElement) result.get("element") : null);
+			}
+			else {
+				item.error = String.valueOf(result.get("error"));
+			}
+		}
+		return Collections.unmodifiableList(items);
+	}
+
+	/* Returns the items that failed, once the batch has run */
+	public List<Item> getFailures() {
+		ArrayList<Item> failures = new ArrayList<Item>();
+		for (Item item : items) {
+			if (ran && !item.ok) {
+				failures.add(item);
+			}
+		}
+		return failures;
+	}
+
+	/* Returns the # of queued items */
+	public int size() {
+		return items.size();
+	}
+
+	/* Queues an item */
+	private Item add(String action, By locator, String value) {
+		if (ran) {
+			throw new IllegalStateException("FormBatch has already been run");
+		}
+		Item item = new Item(action, locator, value);
+		items.add(item);
+		return item;
+	}
+
+	/*
+	 * One queued item, and its result once the batch has run
+	 */
+	public static class Item {
+		private String action;       // set, clear or lookup
+		private String locatorType;  // How the element is found, such as id or xpath
+		private String locatorValue; // What to find, such as the id
+		private String value;        // Value to set, empty for other actions
+		private boolean ok = false;  // If true, the item succeeded
+		private String error;        // Why the item failed, null if it didn't
+		private WebElement element;  // Element found by a lookup, null for other actions
+
+		/* Constructor */
+		private Item(String action, By locator, String value) {
+			String[] parsed = JsLocator.parse(locator);
+			this.action = action;
+			this.locatorType = parsed[0];
+			this.locatorValue = parsed[1];
+			this.value = (value == null ? "" : value);
+		}
+
+		/* Describes the item for logs, such as "set By.id: firstName" */
+		public String getDescription() {
+			return action + " By." + locatorType + ": " + locatorValue;
+		}
+
+		/* Getters */
+		public boolean isOk() { return ok; }
+		public String getError() { return error; }
+		public WebElement getElement() { return element; }
+	}
+}
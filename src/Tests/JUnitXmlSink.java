@@ -0,0 +1,92 @@
+package Tests;
+
+import java.io.IOException;
+
+import org.junit.runner.notification.Failure;
+
+/*
+ * JUnitXmlSink
+ *
+ * Writes results in the JUnit XML format understood by most CI servers. Each test class is written
+ * as its own <testsuite> with a single <testcase> as soon as it finishes, so the counts on each suite
+ * are always correct even though the file is written as the run goes. The closing </testsuites> tag is
+ * only written when the sink is closed.
+ */
+
+public class JUnitXmlSink extends ResultSink {
+
+	/* Constructor */
+	public JUnitXmlSink(String path) throws IOException {
+		super(path);
+	}
+
+	protected String getHeader() {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuites name=\"SelTest\">\n";
+	}
+
+	protected String getFooter() {
+		return "</testsuites>\n";
+	}
+
+	protected String format(NamedResult result) {
+		String time = String.format("%.3f", result.getDuration() / 1000.0);
+		String name = result.getName().substring(result.getName().lastIndexOf('.') + 1);
+
+		StringBuilder xml = new StringBuilder();
+		xml.append("  <testsuite name=\"").append(escape(result.getName()))
+		   .append("\" tests=\"1\" failures=\"").append(result.wasSuccessful() ? 0 : 1)
+		   .append("\" errors=\"0\" skipped=\"0\" time=\"").append(time).append("\">\n");
+
+		xml.append("    <properties>\n")
+		   .append("      <property name=\"category\" value=\"").append(escape(result.getCategory())).append("\"/>\n")
+		   .append("      <property name=\"warning\" value=\"").append(result.hadWarning()).append("\"/>\n")
+		   .append("      <property name=\"attempts\" value=\"").append(result.getAttempts()).append("\"/>\n")
+		   .append("      <property name=\"flaky\" value=\"").append(result.isFlaky()).append("\"/>\n")
+		   .append("    </properties>\n");
+
+		xml.append("    <testcase classname=\"").append(escape(result.getCategory()))
+		   .append("\" name=\"").append(escape(name))
+		   .append("\" time=\"").append(time).append("\"");
+
+		if (result.wasSuccessful()) {
+			xml.append("/>\n");
+		}
+		else {
+			xml.append(">\n");
+			for (Failure failure : result.getResult().getFailures()) {
+				xml.append("      <failure message=\"").append(escape(failure.getMessage()))
+				   .append("\" type=\"").append(escape(failure.getException().getClass().getName())).append("\">")
+				   .append(escape(failure.getTrace()))
+				   .append("</failure>\n");
+			}
+			xml.append("    </testcase>\n");
+		}
+
+		xml.append("  </testsuite>\n");
+		return xml.toString();
+	}
+
+	/* Escapes text for use in XML attributes and elements */
+	private static String escape(String text) {
+		if (text == null) {
+			return "";
+		}
+		StringBuilder escaped = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '&':  escaped.append("&amp;");  break;
+				case '<':  escaped.append("&lt;");   break;
+				case '>':  escaped.append("&gt;");   break;
+				case '"':  escaped.append("&quot;"); break;
+				case '\'': escaped.append("&apos;"); break;
+				default:
+					// Control characters other than tab and newlines aren't allowed in XML 1.0
+					if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+						escaped.append(c);
+					}
+			}
+		}
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,54 @@
+package Tests;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openqa.selenium.By;
+
+/*
+ * JsLocator
+ *
+ * Finds elements from inside the browser, for helpers that do many things in one script (FormBatch,
+ * DomWaiter). A By is turned into a locator type and value, which the script's find() function uses to
+ * find the first matching element.
+ */
+
+class JsLocator {
+
+	/* Locator types find() supports, as named by By */
+	final static List<String> TYPES = Arrays.asList("id", "name", "className", "tagName", "cssSelector", "xpath");
+
+	/*
+	 * Script function returning the first element matching a locator type and value, or null if there
+	 * is none
+	 */
+	final static String FIND_FUNCTION =
+		  "function find(how, what) {"
+		+ "  switch (how) {"
+		+ "    case 'id': return document.getElementById(what);"
+		+ "    case 'name': return document.getElementsByName(what)[0] || null;"
+		+ "    case 'className': return document.getElementsByClassName(what)[0] || null;"
+		+ "    case 'tagName': return document.getElementsByTagName(what)[0] || null;"
+		+ "    case 'cssSelector': return document.querySelector(what);"
+		+ "    case 'xpath': return document.evaluate(what, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;"
+		+ "  }"
+		+ "  throw new Error('Unsupported locator type ' + how);"
+		+ "}";
+
+	/*
+	 * Returns the locator type and value of a By, such as { "id", "firstName" }. Reads them from the By's
+	 * description, such as "By.id: firstName", as By doesn't expose them directly. Throws
+	 * IllegalArgumentException for locators find() doesn't support, like By.linkText.
+	 */
+	static String[] parse(By locator) {
+		String description = locator.toString();
+		int colon = description.indexOf(": ");
+		if (description.startsWith("By.") && colon >= 0) {
+			String type = description.substring(3, colon);
+			if (TYPES.contains(type)) {
+				return new String[] { type, description.substring(colon + 2) };
+			}
+		}
+		throw new IllegalArgumentException("Unsupported locator for in-page lookups: " + description);
+	}
+}
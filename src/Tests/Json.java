@@ -0,0 +1,223 @@
+package Tests;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ * Json
+ *
+ * Small helpers for writing JSON by hand, for the live dashboard and machine-readable result files,
+ * and for reading those result files (and rows read from the browser) back.
+ */
+
+public class Json {
+
+	/*
+	 * Returns the string as a quoted JSON string, escaping quotes, backslashes and control characters.
+	 * Returns null (unquoted) if the string is null.
+	 */
+	public static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+
+		StringBuilder quoted = new StringBuilder(value.length() + 2);
+		quoted.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':  quoted.append("\\\""); break;
+				case '\\': quoted.append("\\\\"); break;
+				case '\n': quoted.append("\\n");  break;
+				case '\r': quoted.append("\\r");  break;
+				case '\t': quoted.append("\\t");  break;
+				default:
+					if (c < 0x20) {
+						quoted.append(String.format("\\u%04x", (int) c));
+					}
+					else {
+						quoted.append(c);
+					}
+			}
+		}
+		quoted.append('"');
+		return quoted.toString();
+	}
+
+	/*
+	 * Reads a JSON object, such as a line of a JSON Lines result file, into a hash of its fields.
+	 * Strings are unescaped, null becomes null, and anything else (numbers, booleans) is kept as written.
+	 * Nested objects and arrays are kept as their JSON text. Throws IllegalArgumentException on malformed
+	 * input.
+	 */
+	public static HashMap<String, String> parseObject(String json) {
+		int[] pos = { skipSpace(json, 0) };
+		return readObject(json, pos);
+	}
+
+	/*
+	 * Reads a JSON array of flat objects, such as rows from a grid, into a list of hashes the same as
+	 * parseObject(). null elements are kept as null. Throws IllegalArgumentException on malformed input.
+	 */
+	public static ArrayList<HashMap<String, String>> parseObjectArray(String json) {
+		ArrayList<HashMap<String, String>> objects = new ArrayList<HashMap<String, String>>();
+		int[] pos = { skipSpace(json, 0) };
+		expect(json, pos, '[');
+		if (peek(json, pos) == ']') {
+			return objects;
+		}
+
+		while (true) {
+			if (json.startsWith("null", pos[0])) {
+				objects.add(null);
+				pos[0] = skipSpace(json, pos[0] + 4);
+			}
+			else {
+				objects.add(readObject(json, pos));
+			}
+
+			char next = peek(json, pos);
+			int at = pos[0];
+			pos[0] = skipSpace(json, at + 1);
+			if (next == ']') {
+				return objects;
+			}
+			if (next != ',') {
+				throw new IllegalArgumentException("Expected , or ] at " + at + " in " + json);
+			}
+		}
+	}
+
+	/* Reads a flat object at the position, and moves past it and any whitespace after it */
+	private static HashMap<String, String> readObject(String json, int[] pos) {
+		HashMap<String, String> fields = new HashMap<String, String>();
+		expect(json, pos, '{');
+		if (peek(json, pos) == '}') {
+			pos[0] = skipSpace(json, pos[0] + 1);
+			return fields;
+		}
+
+		while (true) {
+			String key = readString(json, pos);
+			expect(json, pos, ':');
+			String value;
+			if (peek(json, pos) == '"') {
+				value = readString(json, pos);
+			}
+			else if (peek(json, pos) == '{' || peek(json, pos) == '[') {
+				value = readNested(json, pos);
+			}
+			else {
+				int start = pos[0];
+				while (pos[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(pos[0])) == -1) {
+					pos[0]++;
+				}
+				value = json.substring(start, pos[0]);
+				if (value.isEmpty()) {
+					throw new IllegalArgumentException("Unsupported value for " + key + " in " + json);
+				}
+				value = (value.equals("null") ? null : value);
+				pos[0] = skipSpace(json, pos[0]);
+			}
+			fields.put(key, value);
+
+			char next = peek(json, pos);
+			int at = pos[0];
+			pos[0] = skipSpace(json, at + 1);
+			if (next == '}') {
+				return fields;
+			}
+			if (next != ',') {
+				throw new IllegalArgumentException("Expected , or } at " + at + " in " + json);
+			}
+		}
+	}
+
+	/* Reads a quoted string at the position, unescaping it, and moves past it */
+	private static String readString(String json, int[] pos) {
+		expect(json, pos, '"');
+		StringBuilder value = new StringBuilder();
+		while (pos[0] < json.length()) {
+			char c = json.charAt(pos[0]++);
+			if (c == '"') {
+				pos[0] = skipSpace(json, pos[0]);
+				return value.toString();
+			}
+			if (c != '\\') {
+				value.append(c);
+				continue;
+			}
+			if (pos[0] >= json.length()) {
+				break;
+			}
+			char escaped = json.charAt(pos[0]++);
+			switch (escaped) {
+				case 'n': value.append('\n'); break;
+				case 'r': value.append('\r'); break;
+				case 't': value.append('\t'); break;
+				case 'b': value.append('\b'); break;
+				case 'f': value.append('\f'); break;
+				case 'u':
+					if (pos[0] + 4 > json.length()) {
+						throw new IllegalArgumentException("Bad escape in " + json);
+					}
+					value.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+					pos[0] += 4;
+					break;
+				default: value.append(escaped); // Quotes, backslashes and slashes
+			}
+		}
+		throw new IllegalArgumentException("Unterminated string in " + json);
+	}
+
+	/* Returns the nested object or array at the position as its JSON text, and moves past it */
+	private static String readNested(String json, int[] pos) {
+		int start = pos[0];
+		int depth = 0;
+		boolean inString = false;
+		while (pos[0] < json.length()) {
+			char c = json.charAt(pos[0]++);
+			if (inString) {
+				if (c == '\\') {
+					pos[0]++;
+				}
+				else if (c == '"') {
+					inString = false;
+				}
+			}
+			else if (c == '"') {
+				inString = true;
+			}
+			else if (c == '{' || c == '[') {
+				depth++;
+			}
+			else if ((c == '}' || c == ']') && --depth == 0) {
+				String value = json.substring(start, pos[0]);
+				pos[0] = skipSpace(json, pos[0]);
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Unterminated object or array in " + json);
+	}
+
+	/* Moves past the expected character and any whitespace after it */
+	private static void expect(String json, int[] pos, char c) {
+		if (peek(json, pos) != c) {
+			throw new IllegalArgumentException("Expected " + c + " at " + pos[0] + " in " + json);
+		}
+		pos[0] = skipSpace(json, pos[0] + 1);
+	}
+
+	/* Returns the character at the position, or 0 at the end */
+	private static char peek(String json, int[] pos) {
+		return (pos[0] < json.length() ? json.charAt(pos[0]) : 0);
+	}
+
+	/* Returns the position of the next character that isn't whitespace */
+	private static int skipSpace(String json, int pos) {
+		while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+}
@@ -0,0 +1,45 @@
+package Tests;
+
+import java.io.IOException;
+
+/*
+ * JsonLinesSink
+ *
+ * Writes one JSON object per finished test class, one per line:
+ *
+ *   {"name":"Control.ControlFail","category":"Control","log":"Control/ControlFail.html",
+ *    "status":"FAILED","warning":false,"duration":1234,"runs":1,"failures":1,"failure":"...",
+ *    "attempts":1,"flaky":false}
+ *
+ * duration is in milliseconds, for the last attempt. failure is the first failure's message, or null if
+ * the test passed. flaky is true if the test failed at first but passed on a retry.
+ */
+
+public class JsonLinesSink extends ResultSink {
+
+	private String fileExtension; // File extension of the test logs, for the log link
+
+	/* Constructor */
+	public JsonLinesSink(String path, String fileExtension) throws IOException {
+		super(path);
+		this.fileExtension = fileExtension;
+	}
+
+	protected String getHeader() { return ""; }
+	protected String getFooter() { return ""; }
+
+	protected String format(NamedResult result) {
+		return "{\"name\":" + Json.quote(result.getName())
+			 + ",\"category\":" + Json.quote(result.getCategory())
+			 + ",\"log\":" + Json.quote(result.getLogPath() + fileExtension)
+			 + ",\"status\":" + Json.quote(getStatus(result))
+			 + ",\"warning\":" + result.hadWarning()
+			 + ",\"duration\":" + result.getDuration()
+			 + ",\"runs\":" + result.getResult().getRunCount()
+			 + ",\"failures\":" + result.getResult().getFailureCount()
+			 + ",\"failure\":" + Json.quote(result.getFailureMessage())
+			 + ",\"attempts\":" + result.getAttempts()
+			 + ",\"flaky\":" + result.isFlaky()
+			 + "}\n";
+	}
+}
@@ -0,0 +1,90 @@
+package Tests;
+
+/*
+ * LatencyHistogram
+ *
+ * Fixed-size histogram of durations, for percentiles without keeping every sample. Durations are
+ * counted in microseconds, in buckets that are 1/8 of a power of two wide, so any percentile is within
+ * 12.5% of the true value, while covering everything from 1us to over an hour in under 300 buckets.
+ * The count, sum and maximum are exact.
+ */
+
+public class LatencyHistogram {
+
+	private final static int SUB_BUCKETS = 8;   // Buckets for each power of two
+	private final static int SUB_BITS = 3;      // log2(SUB_BUCKETS)
+	private final static int BUCKETS = 36 * SUB_BUCKETS; // Enough for 2^36us, about 19 hours
+
+	private long[] counts = new long[BUCKETS];  // # of durations in each bucket
+	private long count = 0;                     // Total # of durations
+	private long sumMicros = 0;                 // Sum of every duration, in microseconds
+	private long maxMicros = 0;                 // Longest duration, in microseconds
+
+	/* Adds a duration, given in nanoseconds */
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		counts[bucketFor(micros)]++;
+		count++;
+		sumMicros += micros;
+		maxMicros = Math.max(maxMicros, micros);
+	}
+
+	/* Adds every duration in another histogram to this one */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sumMicros += other.sumMicros;
+		maxMicros = Math.max(maxMicros, other.maxMicros);
+	}
+
+	/*
+	 * Returns the percentile (0 - 100) in microseconds, as the upper edge of the bucket it falls in,
+	 * capped at the maximum. Returns 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(upperEdge(i), maxMicros);
+			}
+		}
+		return maxMicros;
+	}
+
+	/* Getters, times in microseconds */
+	public long getCount() { return count; }
+	public long getSum() { return sumMicros; }
+	public long getMax() { return maxMicros; }
+
+	/*
+	 * Finds the bucket for a duration. Durations below SUB_BUCKETS get a bucket each. Above that, the
+	 * highest bit picks the power of two and the next SUB_BITS bits pick the bucket within it.
+	 */
+	private static int bucketFor(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int highBit = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) (micros >>> (highBit - SUB_BITS)) & (SUB_BUCKETS - 1);
+		int bucket = (highBit - SUB_BITS + 1) * SUB_BUCKETS + sub;
+		return Math.min(bucket, BUCKETS - 1);
+	}
+
+	/* Returns the largest duration that falls in a bucket */
+	private static long upperEdge(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int highBit = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		int sub = bucket % SUB_BUCKETS;
+		long lower = (1L << highBit) + ((long) sub << (highBit - SUB_BITS));
+		return lower + (1L << (highBit - SUB_BITS)) - 1;
+	}
+}
@@ -0,0 +1,233 @@
+package Tests;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * LogOutputService
+ *
+ * Shared output layer for the test logs and result logs. Writers hand their text to a single I/O
+ * thread, which batches everything queued so far, coalesces each file's writes into one large buffer,
+ * and writes it through a FileChannel. This keeps disk syscalls off the test threads.
+ *
+ * Data only reaches the disk's cache when the I/O thread gets to it. Callers that need it to be there
+ * (end of a log, etc.) use AsyncLogWriter.close() or AsyncLogWriter.sync(), which wait on the I/O thread.
+ */
+
+public class LogOutputService {
+
+	private final static int QUEUE_CAPACITY = 4096;      // Max # of queued operations before writers block
+	private final static int BUFFER_SIZE = 1024 * 1024;  // Size of the buffer used to coalesce writes
+
+	final static int DATA = 0;                            // Operation type, write data
+	final static int SYNC = 1;                            // Operation type, force everything written so far to disk
+	final static int CLOSE = 2;                           // Operation type, close the file
+
+	private static LogOutputService instance;            // Shared instance, created on first use
+
+	private LinkedBlockingQueue<Operation> queue          // Operations waiting for the I/O thread
+		= new LinkedBlockingQueue<Operation>(QUEUE_CAPACITY);
+	private ByteBuffer buffer                             // Coalesces writes to the same file
+		= ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private Charset charset = Charset.defaultCharset();  // Same encoding FileWriter used
+
+	private AtomicLong bytesWritten = new AtomicLong();   // Total # of bytes written to disk
+	private AtomicLong batches = new AtomicLong();        // # of times the I/O thread drained the queue
+	private AtomicLong channelWrites = new AtomicLong();  // # of FileChannel.write() calls
+	private AtomicLong maxQueueDepth = new AtomicLong();  // Most operations waiting at once
+
+	/* Returns the shared service, starting its I/O thread if needed */
+	public static synchronized LogOutputService get() {
+		if (instance == null) {
+			instance = new LogOutputService();
+			Thread thread = new Thread(instance::runLoop, "SelTest-log-output");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return instance;
+	}
+
+	/*
+	 * Opens (creating or truncating) a file and returns a writer for it. The file is opened on the
+	 * calling thread, so problems like a missing directory are reported straight away.
+	 */
+	public AsyncLogWriter open(String path) throws IOException {
+		return open(path, charset);
+	}
+
+	/* Same as above, but with the given encoding instead of the platform default */
+	public AsyncLogWriter open(String path, Charset encoding) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		return new AsyncLogWriter(this, channel, encoding);
+	}
+
+	/* Queues text to be written. Blocks only if the queue is full. */
+	void submit(AsyncLogWriter writer, byte[] data) throws IOException {
+		enqueue(new Operation(writer, DATA, data));
+	}
+
+	/* Queues a sync or close, and waits for the I/O thread to finish it */
+	void submitAndWait(AsyncLogWriter writer, int type) throws IOException {
+		Operation operation = new Operation(writer, type, null);
+		enqueue(operation);
+		try {
+			operation.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for log output", e);
+		}
+		if (operation.error != null) {
+			throw operation.error;
+		}
+	}
+
+	private void enqueue(Operation operation) throws IOException {
+		try {
+			queue.put(operation);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while queueing log output", e);
+		}
+		maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+	}
+
+	/*
+	 * Main loop of the I/O thread. Waits for an operation, then takes everything else queued with it
+	 * as one batch.
+	 */
+	private void runLoop() {
+		ArrayList<Operation> batch = new ArrayList<Operation>();
+		while (true) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			queue.drainTo(batch);
+			batches.incrementAndGet();
+			process(batch);
+			batch.clear();
+		}
+	}
+
+	/*
+	 * Writes a batch, one file at a time. Each file's operations are handled in the order they were queued.
+	 */
+	private void process(ArrayList<Operation> batch) {
+		LinkedHashMap<AsyncLogWriter, ArrayList<Operation>> byWriter
+			= new LinkedHashMap<AsyncLogWriter, ArrayList<Operation>>();
+		for (Operation operation : batch) {
+			ArrayList<Operation> operations = byWriter.get(operation.writer);
+			if (operations == null) {
+				operations = new ArrayList<Operation>();
+				byWriter.put(operation.writer, operations);
+			}
+			operations.add(operation);
+		}
+
+		for (AsyncLogWriter writer : byWriter.keySet()) {
+			FileChannel channel = writer.getChannel();
+			for (Operation operation : byWriter.get(writer)) {
+				try {
+					if (operation.type == DATA) {
+						append(channel, operation.data);
+					}
+					else {
+						drain(channel);
+						if (operation.type == SYNC) {
+							channel.force(false);
+						}
+						else {
+							channel.close();
+						}
+					}
+				} catch (IOException e) {
+					buffer.clear();
+					operation.error = e;
+					writer.setFailure(e);
+				}
+				operation.done.countDown();
+			}
+
+			try {
+				drain(channel);
+			} catch (IOException e) {
+				buffer.clear();
+				writer.setFailure(e);
+			}
+		}
+	}
+
+	/* Adds data to the buffer, writing the buffer out first if there isn't room */
+	private void append(FileChannel channel, byte[] data) throws IOException {
+		if (data.length > buffer.remaining()) {
+			drain(channel);
+		}
+		if (data.length > buffer.capacity()) {
+			writeFully(channel, ByteBuffer.wrap(data));
+		}
+		else {
+			buffer.put(data);
+		}
+	}
+
+	/* Writes out whatever is in the buffer */
+	private void drain(FileChannel channel) throws IOException {
+		if (buffer.position() == 0) {
+			return;
+		}
+		buffer.flip();
+		writeFully(channel, buffer);
+		buffer.clear();
+	}
+
+	private void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) {
+			bytesWritten.addAndGet(channel.write(data));
+			channelWrites.incrementAndGet();
+		}
+	}
+
+	/* Getters for the counters */
+	public long getBytesWritten() { return bytesWritten.get(); }
+	public long getBatches() { return batches.get(); }
+	public long getChannelWrites() { return channelWrites.get(); }
+	public int getQueueDepth() { return queue.size(); }
+	public long getMaxQueueDepth() { return maxQueueDepth.get(); }
+
+	/* Returns a one line summary of the counters, for the result logs */
+	public String getStatistics() {
+		return "bytes written " + getBytesWritten()
+			 + ", batches " + getBatches()
+			 + ", channel writes " + getChannelWrites()
+			 + ", queue depth " + getQueueDepth()
+			 + " (max " + getMaxQueueDepth() + ")";
+	}
+
+	/*
+	 * A single queued piece of work for the I/O thread
+	 */
+	private static class Operation {
+		AsyncLogWriter writer;                       // Writer this operation belongs to
+		int type;                                    // DATA, SYNC, or CLOSE
+		byte[] data;                                 // Only set for DATA
+		CountDownLatch done = new CountDownLatch(1); // Released once the I/O thread has handled this
+		IOException error;                           // Set if the I/O thread failed on this
+
+		Operation(AsyncLogWriter writer, int type, byte[] data) {
+			this.writer = writer;
+			this.type = type;
+			this.data = data;
+		}
+	}
+}
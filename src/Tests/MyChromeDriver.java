@@ -1,14 +1,14 @@
 package Tests;
 
+import java.util.Map;
+
 import org.openqa.selenium.By;
 import org.openqa.selenium.Dimension;
 import org.openqa.selenium.NoSuchFrameException;
 import org.openqa.selenium.StaleElementReferenceException;
-import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.support.ui.ExpectedCondition;
-import org.openqa.selenium.support.ui.WebDriverWait;
+import org.openqa.selenium.remote.Response;
 
 /*
  * MyChromeDriver
@@ -18,11 +18,31 @@ import org.openqa.selenium.support.ui.WebDriverWait;
 
 public class MyChromeDriver extends ChromeDriver {
 	
+	public final static Dimension WINDOW_SIZE = new Dimension(1400, 800); // Browser window size for tests
+	public final static long DEFAULT_RETRY_TIMEOUT = 5000;                // Longest an action is retried for, in milliseconds
+	public final static String DRIVER_PATH                                // chromedriver.exe location
+		= System.getProperty("user.dir") + "/chromedriver.exe";
+
+	private DriverProfile profile;                       // Settings Chrome was launched with
+	private RetryEngine retryEngine = new RetryEngine(); // Retries actions, and counts retries for the test log
+	private CommandLatency commandLatency                // Time taken by each command sent to the browser
+		= new CommandLatency();
+
+	/* Sets chromedriver.exe location, before any driver is launched on any thread */
+	static {
+		System.setProperty("webdriver.chrome.driver", DRIVER_PATH);
+	}
 
-	/* Constructor */
+	/* Constructor, launches a normal headed Chrome */
 	public MyChromeDriver() {
-		super();
-		this.manage().window().setSize(new Dimension(1400, 800));
+		this(DriverProfile.FAITHFUL);
+	}
+
+	/* Constructor, launches Chrome with the given profile's settings */
+	public MyChromeDriver(DriverProfile profile) {
+		super(profile.createOptions());
+		this.profile = profile;
+		this.manage().window().setSize(WINDOW_SIZE);
 	}
 	
 	/*
@@ -35,67 +55,80 @@ public class MyChromeDriver extends ChromeDriver {
 	}
 
 	/*
-	 *  Explicity waits up to 10s for the page title to match the expected title.
+	 * Sends a command to the browser, timing it by command name. Every WebDriver call (findElement,
+	 * click, executeScript, get, etc.) goes through here.
+	 */
+	@Override
+	protected Response execute(String driverCommand, Map<String, ?> parameters) {
+		// The session is started by ChromeDriver's constructor, before this driver's fields are set
+		if (commandLatency == null) {
+			return super.execute(driverCommand, parameters);
+		}
+		long start = System.nanoTime();
+		try {
+			return super.execute(driverCommand, parameters);
+		} finally {
+			commandLatency.record(driverCommand, System.nanoTime() - start);
+		}
+	}
+	
+	/*
+	 *  Explicity waits up to 10s for the page title to match the expected title. Waits in the page,
+	 *  so it returns as soon as the title changes instead of on the next poll.
 	 */
 	public void waitForTitle(String title) {
-		(new WebDriverWait(this, 10)).until(new ExpectedCondition<Boolean>() {
-			public Boolean apply(WebDriver d) {
-				return d.getTitle().contentEquals(title);
-			}
-		});
+		new DomWaiter(this).waitFor(10000, DomWaiter.title(title));
 	}
 	
 	/*
 	 *  Retries click on an element if a StaleElementReferenceException is thrown.
 	 *  This seems to occur when clicking on a returned result after performing a search for
-	 *  a constituent infrequently. This function has not caused issues in my experience.
-	 *  Waits 50ms between each attempt.
+	 *  a constituent infrequently. Retries with backoff until the timeout, then throws the exception.
 	 */
-	public void clickRetry(By locator, int retries) throws InterruptedException {
-		for (int i = retries; i > 0; i--) {
-			try {
-				this.findElement(locator).click();
-				i = 0;
-			} catch (StaleElementReferenceException e) {
-				if (i > 0) {
-					Thread.sleep(50); // improve this part in particular
-					System.out.println("caught stale element"); // testing only
-					continue;
-				} else {
-					throw e;
-				}
-			}
-		}
-	}	
-	/* If no number of retries is specified, defaults to 100 */
+	public void clickRetry(By locator, long timeoutMillis) throws InterruptedException {
+		retryEngine.retry("click", timeoutMillis, () -> this.findElement(locator).click(),
+				StaleElementReferenceException.class);
+	}
+	/* If no timeout is specified, defaults to 5s */
 	public void clickRetry(By locator) throws InterruptedException {
-		this.clickRetry(locator, 100);
+		this.clickRetry(locator, DEFAULT_RETRY_TIMEOUT);
+	}
+	/* Retries for up to retries * 50ms, the longest the old fixed 50ms waits could take */
+	public void clickRetry(By locator, int retries) throws InterruptedException {
+		this.clickRetry(locator, retries * 50L);
 	}
 	
 	/*
 	 *  Retries switching to a frame if a NoSuchFrameException is thrown.
 	 *  There seem to be cases where an iframe will sometimes finish loading after the default frame, and
-	 *  trying to switch to the iframe will cause an exception. This function is used to get around this
-	 *  issue and has not caused issues in my experience. Waits 50ms between each attempt.
+	 *  trying to switch to the iframe will cause an exception. Retries with backoff until the timeout,
+	 *  then throws the exception.
 	 */
-	public void switchToFrameRetry(int index, int retries) throws InterruptedException{
-		for (int i = retries; i > 0; i--) {
-			try {
-				this.switchTo().frame(index);
-				i = 0;
-			} catch (NoSuchFrameException e) {
-				if (i > 0) {
-					Thread.sleep(50); // improve this part in particular
-					System.out.println("caught unloaded frame"); // testing only
-					continue;
-				} else {
-					throw e;
-				}
-			}
-		}
+	public void switchToFrameRetry(int index, long timeoutMillis) throws InterruptedException {
+		retryEngine.retry("switchToFrame", timeoutMillis, () -> this.switchTo().frame(index),
+				NoSuchFrameException.class);
 	}
-	/* If no number of retries is specified, defaults to 100 */
+	/* If no timeout is specified, defaults to 5s */
 	public void switchToFrameRetry(int index) throws InterruptedException {
-		this.switchToFrameRetry(index, 100);
+		this.switchToFrameRetry(index, DEFAULT_RETRY_TIMEOUT);
+	}
+	/* Retries for up to retries * 50ms, the longest the old fixed 50ms waits could take */
+	public void switchToFrameRetry(int index, int retries) throws InterruptedException {
+		this.switchToFrameRetry(index, retries * 50L);
+	}
+	
+	/* Gets the time taken by each command sent since the driver was created or last leased */
+	public CommandLatency getCommandLatency() {
+		return commandLatency;
+	}
+	
+	/* Gets the retry engine, for retrying other actions and for its counters */
+	public RetryEngine getRetryEngine() {
+		return retryEngine;
+	}
+	
+	/* Gets the profile Chrome was launched with */
+	public DriverProfile getProfile() {
+		return profile;
 	}
 }
@@ -10,6 +10,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -20,8 +21,6 @@ import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.support.ui.ExpectedCondition;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 /*
  * MyTest
@@ -34,26 +33,28 @@ import org.openqa.selenium.support.ui.WebDriverWait;
 @SuppressWarnings("unused")
 public abstract class MyTest {
 
-	protected FileWriter testLog;   // Filewriter for the test log
+	protected Writer testLog;       // Writer for the test log, written by LogOutputService
 	protected String testLogName;   // Name of the test log file
 	protected boolean pass = false; // Tracks if test passes or not
 	protected String testName;      // Name of the test
 	protected String filePath;      // File path for the test log
 
-	private String logText = "";            // Contains the contents of the log (non-errors)
-	private String currError = "";          // Contains the errors for the log
-	private String filePathPrefix           // Destintation for the file path in the computer's directories
-		= System.getProperty("user.dir")
-		+ "/TestLogs" + MyTotalTime.get() + "/";
+	private TestLogBuffer logText;          // Contents of the log (non-errors), streamed to the test log file
+	private StringBuilder currError         // Contains the errors for the log
+		= new StringBuilder();
+	private String filePathPrefix;          // Destintation for the file path in the computer's directories
 	
 	private String fileExtension = ".html"; // File extension, for file type and formatting
 	private String font = "Consolas";       // Selected font for test log
 	protected String nl = "<br />";         // Format specific newline character
 	private boolean warning = false;        // Detects if warning has been added. Fails tests if so.
-	private MyLocalTime time;				// Calculates the amount of time the test takes 
+	private PhaseTimer time;                // Times each phase of the test (setup, test body, etc.)
+	private DriverProfile profile;          // Settings the test's driver is launched with
 	
 	protected WebDriver driver;             // This test's instance of the webdriver
 	protected JavascriptExecutor js;        // Object for executing js in browser
+	protected PageHelpers pageHelpers;      // Calls the helper library installed in each page
+	protected DomWaiter domWaiter;          // Waits for page conditions from inside the browser
 	protected HashMap<String, Object> vars; // Holds variables for js
 	
 	/*
@@ -66,19 +67,17 @@ public abstract class MyTest {
 	 **************************************/
 	
 	/*
-	 * Creates driver, sets up important globals, and assigns test name and filepath
+	 * Creates driver, sets up important globals, assigns test name and filepath, and starts the test log
 	 */
 	@Before
-	public void setUp() {
-		// Get the starting time of this test
-		time = new MyLocalTime();
-		time.initStartEpoch();
+	public void setUp() throws IOException {
+		// Start timing this test
+		time = new PhaseTimer();
+		time.begin(PhaseTimer.SETUP);
+		
+		// Writes the test log under the log directory of the run this test is part of
+		filePathPrefix = RunContext.current().getLogRoot() + "/";
 		
-		// Create driver, JavaScript executor, and hash for variables
-		createDriver();
-		js = (JavascriptExecutor) driver;
-		vars = new HashMap<String, Object>();
-
 		// Sets file path and file name for the test log
 		String[] className = this.getClass().getName().split("\\.");
 		testName = className[className.length - 1];
@@ -87,6 +86,24 @@ public abstract class MyTest {
 			filePath += className[i];
 			if (i != className.length - 2) filePath += "/";
 		}
+		
+		// Creates test log and adds description. Log entries are streamed to it as the test runs.
+		createTestLog();
+		testLog.write("<p><strong>" + giveTestDescription() + "</p></strong>");
+		logText = new TestLogBuffer(testLog);
+		
+		// Create driver, JavaScript executor, and hash for variables
+		profile = DriverProfile.forTest(this.getClass(), RunContext.current().getDriverProfile());
+		testLog.write("Driver profile: " + profile.getLabel() + nl);
+		time.begin(PhaseTimer.DRIVER_STARTUP);
+		createDriver();
+		time.begin(PhaseTimer.SETUP);
+		testLog.write("Driver started in " + PhaseTimer.formatNanos(time.getPhaseNanos(PhaseTimer.DRIVER_STARTUP)) + nl);
+		js = (JavascriptExecutor) driver;
+		pageHelpers = new PageHelpers(js);
+		domWaiter = new DomWaiter(js);
+		vars = new HashMap<String, Object>();
+		time.end();
 	}
 	
 	/*
@@ -97,7 +114,9 @@ public abstract class MyTest {
 	@Test
 	public void doTest() throws InterruptedException, IOException {
 		// Runs test method
+		time.begin(PhaseTimer.TEST_BODY);
 		test();
+		time.end();
 		
 		// If test didn't stop (test did not fail), the test passes
 		pass = true;
@@ -120,27 +139,56 @@ public abstract class MyTest {
 	public abstract void test() throws InterruptedException, IOException;
 
 	/*
-	 * Closes the driver, and writes to the test log.
+	 * Closes the driver, and finishes writing the test log.
 	 */
 	@After
 	public void tearDown() throws IOException, InterruptedException {
+		// Lets the runner know about warnings, as they aren't part of JUnit's result
+		time.begin(PhaseTimer.TEARDOWN);
+		TestRecord record = TestRecord.current();
+		if (record != null) {
+			record.setWarning(warning);
+			record.setPhases(time);
+		}
+		
+		// Gets the driver's retry counters and command timings before the driver can be handed to another test
+		String retryReport = null;
+		CommandLatency commandLatency = null;
+		if (driver instanceof MyChromeDriver) {
+			MyChromeDriver myDriver = (MyChromeDriver) driver;
+			if (myDriver.getRetryEngine().hasStats()) {
+				retryReport = myDriver.getRetryEngine().getReport();
+			}
+			commandLatency = myDriver.getCommandLatency().copy();
+			if (record != null) {
+				record.setCommandLatency(commandLatency);
+			}
+		}
+		
 		// Closes driver
 		System.out.println("Ending test");
 		quitDriver();
 		
-		// Creates test log and adds description
-		createTestLog();
-		testLog.write("<p><strong>" + giveTestDescription() + "</p></strong>");
+		// Writes the logs from the test that haven't been written yet
+		time.begin(PhaseTimer.LOG_WRITING);
+		logText.flush();
+		
+		// Writes how often driver actions had to be retried, and how long was spent waiting
+		if (retryReport != null) {
+			testLog.write(nl + "<strong>Driver action retries</strong>" + retryReport + nl);
+		}
 		
-		// Writes the logs from the test that were executed
-		testLog.write(logText);
+		// Writes how long each type of WebDriver command took
+		if (commandLatency != null && !commandLatency.isEmpty()) {
+			testLog.write(nl + "<strong>WebDriver command latency</strong>" + commandLatency.getReport() + nl);
+		}
 		
 		// Writes ending statuses
 		if (pass) {
 			testLog.write("<span style=\"color: #0A0\">TEST SUCCESSFUL</span>" + nl);
 		}
 		else {
-			testLog.write(currError);
+			testLog.write(currError.toString());
 		}
 		
 		if (warning) {
@@ -149,24 +197,40 @@ public abstract class MyTest {
 					         + "</span>" + nl);
 		}
 		
-		// Writes time
-		testLog.write(nl + "<strong>Time taken: " + time.getTimeLength() + "</strong>");
+		// Writes time, and the time spent in each phase
+		time.stop();
+		testLog.write(nl + "<strong>Time taken: " + PhaseTimer.formatNanos(time.getTotalNanos()) + "</strong>");
+		testLog.write(time.getReport());
 		
 		// Closes div and file
 		testLog.write("</ div>");
 		testLog.close();
 	}
 	
-	/* Creates the driver, with neccessary set up */
+	/*
+	 * Creates the driver, with neccessary set up, launched with the test's DriverProfile. Leases one from
+	 * DriverPool if the pool is enabled, and takes one launched ahead of time if the run pre-launches them.
+	 */
 	protected void createDriver() {
-		// Set chromedriver.exe location
-		System.setProperty("webdriver.chrome.driver", System.getProperty("user.dir") + "/chromedriver.exe");
-		driver = new MyChromeDriver();
+		if (DriverPool.isEnabled()) {
+			driver = DriverPool.lease(profile);
+		}
+		else {
+			driver = DriverPrelauncher.launch(profile);
+		}
 	}
 
-	/* Quits the driver */
+	/* Quits the driver, or returns it to DriverPool if it was leased */
 	protected void quitDriver() {
-		driver.quit();
+		if (driver == null) {
+			return; // Driver was never created, so there is nothing to close
+		}
+		if (DriverPool.isEnabled() && driver instanceof MyChromeDriver) {
+			DriverPool.release((MyChromeDriver) driver);
+		}
+		else {
+			driver.quit();
+		}
 	}
 	
 	/********************
@@ -174,7 +238,7 @@ public abstract class MyTest {
 	 ********************/
 
 	/*
-	 *  Creates a file for test logs and returns a FileWriter for that file.
+	 *  Creates a file for test logs and opens a writer for that file.
 	 *  Puts it on desktop for now, can change later by editing filePathPrefix.
 	 */
 	protected void createTestLog() throws IOException {
@@ -186,11 +250,17 @@ public abstract class MyTest {
 		}
 	
 		testLogName = myPath.toString() + "/" + testName + fileExtension;
+		
+		// Lets the runner find the test log, such as to keep it when the test is retried
+		TestRecord record = TestRecord.current();
+		if (record != null) {
+			record.setLogFile(testLogName);
+		}
 		System.out.print("Creating " + testLogName + "... ");
 		try {
-			testLog = new FileWriter(new File(testLogName));
+			testLog = LogOutputService.get().open(testLogName);
 		} catch (IOException e) {
-			System.out.println("IOException - FileWriter testLog not initialized");
+			System.out.println("IOException - testLog not initialized");
 			e.printStackTrace();
 			System.exit(1);
 			testLog = null;
@@ -202,29 +272,30 @@ public abstract class MyTest {
 
 	/* Adds a new line to logText */
 	protected void updateLogText(String logTextUpdate) {
-		logText += logTextUpdate + nl;
+		logText.append(logTextUpdate + nl);
 	}
 
 	/* Adds a new line to currError */
 	protected void updateCurrError(String currErrorUpdate) {
-		currError += "<span style=\"color: #F00\"><strong>ERROR:</strong> " + currErrorUpdate + "</span>" + nl;
+		currError.append("<span style=\"color: #F00\"><strong>ERROR:</strong> " + currErrorUpdate + "</span>" + nl);
 	}
 	
 	/* Adds a warning to log text */
 	protected void addWarning(String warningUpdate) {
-		logText += "<span style=\"color: #FFFF00; background-color: #000\">"
-				+ "<strong>WARNING:</strong> " + warningUpdate + "</span>" + nl;
+		logText.append("<span style=\"color: #FFFF00; background-color: #000\">"
+				+ "<strong>WARNING:</strong> " + warningUpdate + "</span>" + nl);
 		warning = true;
 	}
 	
 	/* Replaces currError with given String */
 	protected void changeCurrError(String currErrorChanged) {
-		currError = "<span style=\"color: #F00\"><strong>ERROR:</strong> " + currErrorChanged + "</span>" + nl;
+		currError.setLength(0);
+		updateCurrError(currErrorChanged);
 	}
 	
-	/* Getters */
-	protected String getLogText()   { return logText;   }
-	protected String getCurrError() { return currError; }	
+	/* Getters. getLogText() only returns the part of the log not yet written to the test log file. */
+	protected String getLogText()   { return logText.getWindow(); }
+	protected String getCurrError() { return currError.toString(); }	
 	public String getTestName() {
 		return testName;
 	}
@@ -243,17 +314,15 @@ public abstract class MyTest {
 		WebElement autofield = driver.findElement(By.id(field));
 		autofield.sendKeys(input);
 
-		// wait for hidden dropdown to be displayed
-		WebDriverWait wait = new WebDriverWait(driver, 10);
-		wait.until(ExpectedConditions.visibilityOfElementLocated(By.id(hiddenID)));
+		// wait for hidden dropdown to be displayed with the right option in it
+		domWaiter.waitFor(10000, DomWaiter.visible(By.id(hiddenID)), DomWaiter.textPresent(By.xpath(itemXPath), input));
 
 		// select/click on the right option
-		wait.until(ExpectedConditions.textToBePresentInElementLocated(By.xpath(itemXPath), input));
 		WebElement hiddenInput = driver.findElement(By.xpath(itemXPath));
 		hiddenInput.click();
 
 		// Wait until dropdown is hidden again
-		wait.until(ExpectedConditions.invisibilityOfElementLocated(By.id(hiddenID)));
+		domWaiter.waitFor(10000, DomWaiter.invisible(By.id(hiddenID)));
 	}
 
 	/*
@@ -264,18 +333,18 @@ public abstract class MyTest {
 		WebElement autofield = driver.findElement(By.id(field));
 		autofield.sendKeys(input);
 
-		// wait for hidden dropdown to be displayed
-		WebDriverWait wait = new WebDriverWait(driver, 10);
-
 		// Wait until dropdown is hidden again
-		wait.until(ExpectedConditions.invisibilityOfElementLocated(By.id(hiddenID)));
+		domWaiter.waitFor(10000, DomWaiter.invisible(By.id(hiddenID)));
 	}
 	
 	/*
-	 * Fills a jquery ui autocomplete form via JavaScript. Should bypass some issues with manual filling
+	 * Fills a jquery ui autocomplete form via JavaScript. Should bypass some issues with manual filling.
+	 * field is a JavaScript expression for the field, usually just its id (browsers make elements with
+	 * an id global variables), but anything like document.querySelector('...') works. The input is
+	 * passed to the page as is, so it can contain quotes.
 	 */
 	protected void fillAutocomplete(String input, String field) {
-		js.executeScript(field + ".value = \"" + input + "\";");
+		pageHelpers.call("fillExpression", field, input);
 	}
 
 	/*
@@ -287,24 +356,65 @@ public abstract class MyTest {
 		autofield.clear();
 	}
 
+	/*
+	 *  Starts a batch of field assignments, clears and element lookups, which are all run in a single
+	 *  round trip to the browser by runFormBatch(). Much faster than filling a form field by field.
+	 */
+	protected FormBatch newFormBatch() {
+		return new FormBatch(js);
+	}
+
+	/*
+	 *  Runs a batch started with newFormBatch(). Each item that failed is written to the test log as an
+	 *  error, and the test fails if there were any.
+	 */
+	protected List<FormBatch.Item> runFormBatch(FormBatch batch) {
+		List<FormBatch.Item> items = batch.run();
+		List<FormBatch.Item> failures = batch.getFailures();
+		updateLogText("Ran form batch of " + items.size() + " items, " + failures.size() + " failed");
+		if (!failures.isEmpty()) {
+			changeCurrError("Form batch failed for " + failures.size() + " of " + items.size() + " items");
+			for (FormBatch.Item item : failures) {
+				updateCurrError(item.getDescription() + " - " + item.getError());
+			}
+			fail("Form batch failed for " + failures.size() + " items, first: " + failures.get(0).getDescription());
+		}
+		return items;
+	}
+
 	/*
 	 *  Get a specific raw entry from a SlickGrid element. Likely in .json format.
 	 *  Returning as an ArrayList<String> doesn't seem to work, for some reason.
 	 *  
 	 *  If you're getting a JavaScript error that grid isn't initialized, that's because
 	 *  the SlickGrid is probably named something besides "grid" (for example, on My Lists,
-	 *  it's named listSearchGrid). Just check the id on the grid and change "grid" below
-	 *  to the relevant id.
+	 *  it's named listSearchGrid). Just check the id on the grid and change the grid name
+	 *  below to the relevant id.
+	 *  
+	 *  To check more than a few rows, use getSlickGrid(), which reads many rows per round trip.
 	 */
 	protected String getSlickGridEntry(int index) {
-		@SuppressWarnings("unchecked")
-		ArrayList<String> rawEntry = (ArrayList<String>) js
-				.executeScript("return $(grid.getDataItem(" + (index) + "));");
+		List<?> rawEntry = (List<?>) pageHelpers.call("gridItem", SlickGridReader.DEFAULT_GRID_NAME, index);
 		
 		// Remove leading '[{' and trailing '}]'
 		return rawEntry.toString().substring(2, rawEntry.toString().length() - 2);
 	}
 	
+	/*
+	 *  Returns a reader for the SlickGrid in the variable named grid, which reads rows in chunks of
+	 *  many rows per round trip to the browser
+	 */
+	protected SlickGridReader getSlickGrid() {
+		return new SlickGridReader(js);
+	}
+
+	/*
+	 *  Same as above, for a SlickGrid in some other variable, such as listSearchGrid
+	 */
+	protected SlickGridReader getSlickGrid(String gridName) {
+		return new SlickGridReader(js, gridName);
+	}
+	
 	/* 
 	 * Flips name
 	 * Given : First M. Last
@@ -1,4 +1,8 @@
 package Tests;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.runner.Result;
 
 /*
@@ -12,6 +16,14 @@ public class NamedResult {
 	
 	private String name;   // Name of the corresponding JUnit test
 	private Result result; // Result of the corresponding JUnit test
+	private long duration; // Time taken to run the corresponding JUnit test, in milliseconds
+	private long startTime; // When the corresponding JUnit test started, as a Unix timestamp in milliseconds
+	private TestRecord record = null; // Extra information recorded by the test, if it was run by a runner
+	private boolean successful;       // Outcome, only used when there is no Result
+	private String failureMessage;    // First failure's message, only used when there is no Result
+	private String logRoot = null;    // Directory of the test log relative to the result logs, null if the same
+	private int attempt = 1;          // Which attempt at the test this result is, from 1
+	private ArrayList<NamedResult> previousAttempts = null; // Earlier failed attempts, oldest first, if the test was retried
 	
 	/* Constructor */
 	public NamedResult(String name, Result result) {
@@ -19,15 +31,91 @@ public class NamedResult {
 		this.result = result;
 	}
 	
+	/*
+	 * Constructor for a result read back from a result file, such as when merging runs, which only
+	 * has the outcome and no JUnit Result
+	 */
+	public NamedResult(String name, boolean successful, String failureMessage) {
+		this.name = name;
+		this.successful = successful;
+		this.failureMessage = failureMessage;
+	}
+	
 	/* Getters */
 	public String getName() { return name; }
 	public Result getResult() { return result; }
+	public long getDuration() { return duration; }
+	public long getStartTime() { return startTime; }
+	public TestRecord getRecord() { return record; }
+	public String getLogRoot() { return logRoot; }
+	public int getAttempt() { return attempt; }
+	
+	/* Setters */
+	public void setDuration(long duration) { this.duration = duration; }
+	public void setStartTime(long startTime) { this.startTime = startTime; }
+	public void setRecord(TestRecord record) { this.record = record; }
+	public void setLogRoot(String logRoot) { this.logRoot = logRoot; }
+	public void setAttempt(int attempt) { this.attempt = attempt; }
+	
+	/*
+	 * Marks this result as a retry of the previous result, keeping the previous result's own earlier
+	 * attempts ahead of it. Each attempt keeps its own number, see setAttempt().
+	 */
+	public void setPreviousAttempt(NamedResult previous) {
+		previousAttempts = new ArrayList<NamedResult>(previous.getPreviousAttempts());
+		previousAttempts.add(previous);
+	}
+	
+	/* Returns the earlier failed attempts, oldest first. Empty if the test was only run once. */
+	public List<NamedResult> getPreviousAttempts() {
+		if (previousAttempts == null) {
+			return Collections.emptyList();
+		}
+		return previousAttempts;
+	}
+	
+	/* Returns the # of times the test was run up to this result, including retries */
+	public int getAttempts() {
+		return attempt;
+	}
+	
+	/* Returns true if the test failed at first, but passed on a retry */
+	public boolean isFlaky() {
+		return wasSuccessful() && getAttempts() > 1;
+	}
+	
+	/* Returns true if the test added a warning. Only known for tests started by a runner. */
+	public boolean hadWarning() {
+		return record != null && record.hadWarning();
+	}
+	
+	/* Returns the message of the first failure, or null if the test passed */
+	public String getFailureMessage() {
+		if (result == null) {
+			return failureMessage;
+		}
+		if (result.getFailures().isEmpty()) {
+			return null;
+		}
+		return result.getFailures().get(0).getMessage();
+	}
+	
+	/* Returns the categories of the test, i.e. its name without the last part. Empty if it has none. */
+	public String getCategory() {
+		int end = name.lastIndexOf('.');
+		return (end == -1 ? "" : name.substring(0, end));
+	}
+	
+	/* Returns the path of the test log, relative to the run's directory, without the file extension */
+	public String getLogPath() {
+		return name.replace('.', '/');
+	}
 	
 	/* 
 	 * Returns true if the JUnit test corresponding the the Result was successful, and false if
 	 * it was not 
 	 */
 	public boolean wasSuccessful() { 
-		return result.wasSuccessful(); 
+		return (result == null ? successful : result.wasSuccessful()); 
 	}
 }
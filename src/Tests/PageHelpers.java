@@ -0,0 +1,210 @@
+package Tests;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openqa.selenium.JavascriptExecutor;
+
+/*
+ * PageHelpers
+ *
+ * A library of helper functions installed in the page once, as window.__selTest, and then called by
+ * name. Without it, every call ships its whole script (FormBatch, SlickGridReader and DomWaiter each
+ * send a few KB), which the browser parses again each time, and scripts built by pasting values into
+ * their text break on quotes. With it, each call is a few lines naming the function, and values are
+ * passed as script arguments, so they arrive exactly as given:
+ *
+ *   helpers.call("fillExpression", "firstName", "O'Brien \"Bob\"");
+ *
+ * A new page (after navigating or reloading) starts without the library. Each call checks for it and,
+ * if it is missing or out of date, it is installed and the call is made again, so the first call on a
+ * page costs one extra round trip and later calls none.
+ *
+ * Functions in the library:
+ *   fillExpression(expression, value)             Sets the value of the field a script expression
+ *                                                 gives, such as an id or document.forms[0].name,
+ *                                                 without events
+ *   batch(items)                                  Runs a FormBatch
+ *   gridRows(name, from, to, columns)             Reads a chunk of SlickGrid rows, for SlickGridReader
+ *   gridItem(name, index)                         Returns one raw SlickGrid row
+ *   waitFor(conditions, timeout, interval, done)  Waits for DomWaiter conditions, use callAsync()
+ */
+
+public class PageHelpers {
+
+	/*
+	 * Installs the library. Elements are found with JsLocator's find(). SlickGrids are found by name on
+	 * window, or as a global variable declared with let or const (which aren't on window) if not.
+	 */
+	private final static String LIBRARY =
+		  "(function (version) {"
+		+ JsLocator.FIND_FUNCTION
+		+ "function shown(e) {"
+		+ "  return !!(e.offsetWidth || e.offsetHeight || e.getClientRects().length)"
+		+ "      && window.getComputedStyle(e).visibility !== 'hidden';"
+		+ "}"
+		+ "function fillExpression(expression, value) {"
+		+ "  var element = (0, eval)(expression);"
+		+ "  if (!element) throw new Error('No element found for ' + expression);"
+		+ "  element.value = value;"
+		+ "}"
+		+ "function batch(items) {"
+		+ "  var results = [];"
+		+ "  for (var i = 0; i < items.length; i++) {"
+		+ "    var item = items[i];"
+		+ "    try {"
+		+ "      var element = find(item[1], item[2]);"
+		+ "      if (!element) { results.push({ok: false, error: 'No element found'}); continue; }"
+		+ "      if (item[0] === 'set' || item[0] === 'clear') {"
+		+ "        element.value = (item[0] === 'set' ? item[3] : '');"
+		+ "        element.dispatchEvent(new Event('change', {bubbles: true}));"
+		+ "        results.push({ok: true});"
+		+ "      } else {"
+		+ "        results.push({ok: true, element: element});"
+		+ "      }"
+		+ "    } catch (e) {"
+		+ "      results.push({ok: false, error: String(e && e.message || e)});"
+		+ "    }"
+		+ "  }"
+		+ "  return results;"
+		+ "}"
+		+ "function grid(name) {"
+		+ "  var parts = name.split('.'), value = window;"
+		+ "  for (var i = 0; i < parts.length && value != null; i++) value = value[parts[i]];"
+		+ "  if (value == null && /^[A-Za-z_$][A-Za-z0-9_$]*(\\.[A-Za-z_$][A-Za-z0-9_$]*)*$/.test(name)) {"
+		+ "    value = (0, eval)(name);"
+		+ "  }"
+		+ "  if (value == null) throw new Error('No SlickGrid named ' + name);"
+		+ "  return value;"
+		+ "}"
+		+ "function gridRows(name, from, to, columns) {"
+		+ "  var slickGrid = grid(name), total = slickGrid.getDataLength(), end = Math.min(to, total), rows = [];"
+		+ "  for (var i = from; i < end; i++) {"
+		+ "    var item = slickGrid.getDataItem(i);"
+		+ "    if (item == null) { rows.push(null); continue; }"
+		+ "    var keys = columns || Object.keys(item), row = {};"
+		+ "    for (var k = 0; k < keys.length; k++) {"
+		+ "      var value = item[keys[k]];"
+		+ "      if (value === undefined || typeof value === 'function') continue;"
+		+ "      row[keys[k]] = (value !== null && typeof value === 'object' ? JSON.stringify(value) : value);"
+		+ "    }"
+		+ "    rows.push(row);"
+		+ "  }"
+		+ "  return [total, JSON.stringify(rows)];"
+		+ "}"
+		+ "function gridItem(name, index) {"
+		+ "  return [grid(name).getDataItem(index)];"
+		+ "}"
+		+ "function holds(c) {"
+		+ "  var e;"
+		+ "  switch (c[0]) {"
+		+ "    case 'visible': e = find(c[1], c[2]); return !!e && shown(e);"
+		+ "    case 'invisible': e = find(c[1], c[2]); return !e || !shown(e);"
+		+ "    case 'text': e = find(c[1], c[2]);"
+		+ "      return !!e && (e.innerText != null ? e.innerText : e.textContent).indexOf(c[3]) >= 0;"
+		+ "    case 'title': return document.title === c[3];"
+		+ "  }"
+		+ "  throw new Error('Unsupported condition ' + c[0]);"
+		+ "}"
+		+ "function check(conditions) {"
+		+ "  for (var i = 0; i < conditions.length; i++) {"
+		+ "    try { if (!holds(conditions[i])) return false; } catch (e) { return false; }"
+		+ "  }"
+		+ "  return true;"
+		+ "}"
+		+ "function waitFor(conditions, timeout, interval, done) {"
+		+ "  if (check(conditions)) { done({ok: true}); return; }"
+		+ "  var finished = false, observer, timer, poll;"
+		+ "  function finish(ok) {"
+		+ "    if (finished) return;"
+		+ "    finished = true; observer.disconnect(); clearTimeout(timer); clearInterval(poll);"
+		+ "    done({ok: ok});"
+		+ "  }"
+		+ "  observer = new MutationObserver(function () { if (check(conditions)) finish(true); });"
+		+ "  observer.observe(document, {childList: true, subtree: true, attributes: true, characterData: true});"
+		+ "  poll = setInterval(function () { if (check(conditions)) finish(true); }, interval);"
+		+ "  timer = setTimeout(function () { finish(check(conditions)); }, timeout);"
+		+ "}"
+		+ "window.__selTest = {version: version, fillExpression: fillExpression, batch: batch,"
+		+ "    gridRows: gridRows, gridItem: gridItem, waitFor: waitFor};"
+		+ "})(arguments[0]);";
+
+	/* Identifies this version of the library, so a page holding a different one gets this one installed */
+	final static String VERSION = Integer.toHexString(LIBRARY.hashCode());
+
+	/*
+	 * Calls a library function. arguments[0] is the expected version, arguments[1] the function's name and
+	 * arguments[2] its arguments. Returns [true, result], or [false] if the library needs installing.
+	 */
+	private final static String CALL =
+		  "var helpers = window.__selTest;"
+		+ "if (!helpers || helpers.version !== arguments[0]) return [false];"
+		+ "return [true, helpers[arguments[1]].apply(null, arguments[2])];";
+
+	/* Same as above, for functions that take a callback as their last argument */
+	private final static String CALL_ASYNC =
+		  "var callback = arguments[arguments.length - 1], helpers = window.__selTest;"
+		+ "if (!helpers || helpers.version !== arguments[0]) { callback([false]); return; }"
+		+ "helpers[arguments[1]].apply(null, arguments[2].concat([function (result) { callback([true, result]); }]));";
+
+	private JavascriptExecutor js;     // Runs the library's functions in the browser
+	private long installs = 0;         // # of times the library was installed
+	private long roundTrips = 0;       // # of executeScript and executeAsyncScript calls made
+
+	/* Constructor */
+	public PageHelpers(JavascriptExecutor js) {
+		this.js = js;
+	}
+
+	/*
+	 * Calls a library function and returns its result. Arguments can be strings, numbers, booleans,
+	 * WebElements, null, or lists of them.
+	 */
+	public Object call(String function, Object... arguments) {
+		return run(false, function, arguments);
+	}
+
+	/*
+	 * Calls a library function that finishes later, like waitFor, and returns the result it finishes
+	 * with. The callback is added as the last argument.
+	 */
+	public Object callAsync(String function, Object... arguments) {
+		return run(true, function, arguments);
+	}
+
+	/* Installs the library in the current page, replacing any other version */
+	public void install() {
+		installs++;
+		roundTrips++;
+		js.executeScript(LIBRARY, VERSION);
+	}
+
+	/* Returns the # of round trips made so far, including installs */
+	public long getRoundTrips() {
+		return roundTrips;
+	}
+
+	/* Returns the # of times the library was installed */
+	public long getInstalls() {
+		return installs;
+	}
+
+	/* Makes a call, installing the library and calling again if the page doesn't have it */
+	private Object run(boolean async, String function, Object[] arguments) {
+		List<Object> argumentList = Arrays.asList(arguments);
+		for (int attempt = 0; attempt < 2; attempt++) {
+			roundTrips++;
+			Object returned = (async ? js.executeAsyncScript(CALL_ASYNC, VERSION, function, argumentList)
+					: js.executeScript(CALL, VERSION, function, argumentList));
+			if (!(returned instanceof List) || ((List<?>) returned).isEmpty()) {
+				throw new IllegalStateException("Unexpected result calling page helper " + function + ": " + returned);
+			}
+			List<?> result = (List<?>) returned;
+			if (Boolean.TRUE.equals(result.get(0))) {
+				return (result.size() > 1 ? result.get(1) : null);
+			}
+			install();
+		}
+		throw new IllegalStateException("Page helpers couldn't be installed for " + function);
+	}
+}
@@ -0,0 +1,153 @@
+package Tests;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * PhaseTimer
+ *
+ * Times the phases of a single test (driver startup, setup, test body, teardown, log writing) using
+ * System.nanoTime, which unlike the system clock never jumps. Phases run one after another: beginning a
+ * phase ends the one before it, and a phase that is begun more than once adds up.
+ *
+ * Also formats lengths of time for the logs, in the same "0h 0m 1s 234ms" format used everywhere.
+ */
+
+public class PhaseTimer {
+
+	public final static String DRIVER_STARTUP = "driver startup"; // Creating or leasing the driver
+	public final static String SETUP = "setup";                   // Everything else before the test body
+	public final static String TEST_BODY = "test body";           // The test itself
+	public final static String TEARDOWN = "teardown";             // Closing or releasing the driver
+	public final static String LOG_WRITING = "log writing";       // Finishing the test log
+
+	private final static long MILLIS_IN_HOUR = 3600000; // # of milliseconds per hour
+	private final static long MILLIS_IN_MIN = 60000;    // # of milliseconds per minute
+	private final static long MILLIS_IN_SEC = 1000;     // # of milliseconds per second
+
+	private LinkedHashMap<String, Long> phases          // Time spent in each phase in nanoseconds, in first use order
+		= new LinkedHashMap<String, Long>();
+	private String current = null;                      // Phase being timed, null if none
+	private long currentStart;                          // When the current phase began
+	private long startNanos = System.nanoTime();        // When the timer was created
+	private long totalNanos = -1;                       // Time from creation to stop(), -1 until stopped
+
+	/* Ends the current phase, if any, and begins the named phase */
+	public void begin(String phase) {
+		long now = System.nanoTime();
+		endAt(now);
+		current = phase;
+		currentStart = now;
+	}
+
+	/* Ends the current phase, if any */
+	public void end() {
+		endAt(System.nanoTime());
+	}
+
+	/* Ends the current phase, and stops the timer's total */
+	public void stop() {
+		long now = System.nanoTime();
+		endAt(now);
+		if (totalNanos < 0) {
+			totalNanos = now - startNanos;
+		}
+	}
+
+	/* Adds the phases and total of another timer to this one, for totals across tests */
+	public void add(PhaseTimer other) {
+		for (Map.Entry<String, Long> phase : other.phases.entrySet()) {
+			Long time = phases.get(phase.getKey());
+			phases.put(phase.getKey(), (time == null ? 0 : time) + phase.getValue());
+		}
+		totalNanos = Math.max(0, totalNanos) + other.getTotalNanos();
+	}
+
+	/* Returns the time from creation until stop(), or until now if not stopped, in nanoseconds */
+	public long getTotalNanos() {
+		return (totalNanos >= 0 ? totalNanos : System.nanoTime() - startNanos);
+	}
+
+	/* Returns the time spent in a phase, in nanoseconds */
+	public long getPhaseNanos(String phase) {
+		Long time = phases.get(phase);
+		return (time == null ? 0 : time);
+	}
+
+	/* Returns true if no phases have been timed */
+	public boolean isEmpty() {
+		return phases.isEmpty();
+	}
+
+	/*
+	 * Returns the phases as an HTML table, with each phase's share of the total. Time not in any
+	 * phase is shown as "other".
+	 */
+	public String getReport() {
+		long total = getTotalNanos();
+		long other = total;
+		StringBuilder report = new StringBuilder();
+		report.append("<table style=\"font-family: Consolas\"><tr><th align=\"left\">Phase</th><th>Time</th><th>%</th></tr>");
+		for (Map.Entry<String, Long> phase : phases.entrySet()) {
+			report.append(row(phase.getKey(), phase.getValue(), total));
+			other -= phase.getValue();
+		}
+		if (other > 1000000) {
+			report.append(row("other", other, total));
+		}
+		report.append("</table>");
+		return report.toString();
+	}
+
+	/* Adds up the phases recorded by each test, for the whole run */
+	public static PhaseTimer total(Collection<NamedResult> results) {
+		PhaseTimer total = new PhaseTimer();
+		total.totalNanos = 0;
+		for (NamedResult result : results) {
+			if (result.getRecord() != null && result.getRecord().getPhases() != null) {
+				total.add(result.getRecord().getPhases());
+			}
+		}
+		return total;
+	}
+
+	/*
+	 * Formats a length of time given in milliseconds, such as "0h 1m 2s 345ms"
+	 */
+	public static String formatMillis(long millis) {
+		// Calculates # of hours passed, and removes that many hours from millis
+		int hours = Math.toIntExact(millis / MILLIS_IN_HOUR);
+		millis -= (long) hours * MILLIS_IN_HOUR;
+
+		// Calculates # of minutes passed, and removes that many minutes from millis
+		long minutes = Math.toIntExact(millis / MILLIS_IN_MIN);
+		millis -= minutes * MILLIS_IN_MIN;
+
+		// Calculates # of seconds passed, and removes that many from millis
+		long seconds = Math.toIntExact(millis / MILLIS_IN_SEC);
+		millis -= seconds * MILLIS_IN_SEC;
+
+		// Returns time passed
+		return hours + "h " + minutes + "m " + seconds + "s " + millis + "ms";
+	}
+
+	/* Formats a length of time given in nanoseconds, the same as formatMillis() */
+	public static String formatNanos(long nanos) {
+		return formatMillis(nanos / 1000000);
+	}
+
+	/* Adds the current phase's time to its total */
+	private void endAt(long now) {
+		if (current != null) {
+			phases.put(current, getPhaseNanos(current) + (now - currentStart));
+			current = null;
+		}
+	}
+
+	/* Formats a table row for a phase */
+	private static String row(String phase, long nanos, long total) {
+		return "<tr><td>" + phase + "</td><td align=\"right\">" + formatNanos(nanos) + "</td><td align=\"right\">"
+			 + String.format("%.1f", (total == 0 ? 0 : 100.0 * nanos / total)) + "</td></tr>";
+	}
+}
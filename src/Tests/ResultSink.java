@@ -0,0 +1,67 @@
+package Tests;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * ResultSink
+ *
+ * Base class for machine-readable result files, written as each test class finishes so other tools
+ * can read them during the run. Subclasses give the header, footer, and the text for each result.
+ * Each result is handed to LogOutputService as soon as it is formatted.
+ */
+
+public abstract class ResultSink implements TestExecutor.RunListener {
+
+	private AsyncLogWriter out;       // Writer for the result file
+	private boolean failed = false;   // True once writing has failed, so the error is only reported once
+
+	/* Constructor, opens the file as UTF-8 and writes the header */
+	public ResultSink(String path) throws IOException {
+		out = LogOutputService.get().open(path, StandardCharsets.UTF_8);
+		out.write(getHeader());
+		out.flush();
+	}
+
+	/* Text written at the start and end of the file */
+	protected abstract String getHeader();
+	protected abstract String getFooter();
+
+	/* Text written for a single finished test */
+	protected abstract String format(NamedResult result);
+
+	public void testStarted(String testName) {
+		// Only finished tests are written
+	}
+
+	/*
+	 * Writes the result, and hands it to the I/O thread straight away so the file can be tailed
+	 */
+	public synchronized void testFinished(NamedResult result) {
+		if (failed) {
+			return;
+		}
+		try {
+			out.write(format(result));
+			out.flush();
+		} catch (IOException e) {
+			failed = true;
+			System.out.println("Could not write result for " + result.getName() + " to result file");
+			e.printStackTrace();
+		}
+	}
+
+	/*
+	 * Writes the footer, and closes the file once it is on disk
+	 */
+	public synchronized void close() throws IOException {
+		out.write(getFooter());
+		out.sync();
+		out.close();
+	}
+
+	/* Gets the result's status, as shown in the result logs */
+	protected static String getStatus(NamedResult result) {
+		return (result.wasSuccessful() ? "SUCCESSFUL" : "FAILED");
+	}
+}
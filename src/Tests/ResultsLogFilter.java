@@ -0,0 +1,34 @@
+package Tests;
+
+import java.util.HashSet;
+
+/*
+ * ResultsLogFilter
+ *
+ * Decides which tests appear in a result log. Categories are shown if they contain at least one
+ * test that is shown.
+ */
+
+@SuppressWarnings("rawtypes")
+public interface ResultsLogFilter {
+
+	/* Returns true if the test with the given result should be written to the result log */
+	public boolean include(NamedResult result);
+
+	/* Shows every test */
+	public final static ResultsLogFilter ALL = result -> true;
+
+	/* Shows failed tests only */
+	public final static ResultsLogFilter FAILED_ONLY = result -> !result.wasSuccessful();
+
+	/*
+	 * Shows only the tests in the given suite
+	 */
+	public static ResultsLogFilter forSuite(Class[] classes) {
+		HashSet<String> names = new HashSet<String>();
+		for (Class test : classes) {
+			names.add(TestExecutor.getTestName(test));
+		}
+		return result -> names.contains(result.getName());
+	}
+}
@@ -0,0 +1,379 @@
+package Tests;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * ResultsLogMerger
+ *
+ * Combines the results of several runs, such as the shards of a run split across machines, into one
+ * ResultsLog and ResultsLogFail. Also used by the runners to load a previous run's results, for
+ * --rerun-failed. Usage:
+ *
+ *   java Tests.ResultsLogMerger <output directory> <result directory> [<result directory> ...]
+ *
+ * Each result directory is a TestLogs directory (or a shard directory inside one) holding Results*.jsonl
+ * files, as written by JsonLinesSink. Directories whose results are all in subdirectories, such as a
+ * TestLogs directory holding every shard, are searched one level down. Links in the merged logs point
+ * at each test's original test log, relative to the output directory.
+ *
+ * Shard manifests (ShardManifest*.json, see TestSharder) found next to the result files are checked
+ * against each other: every shard of a run must be present once, agree on the number of shards and how
+ * the tests were split, and have split them from the same run history. Problems are printed and listed
+ * in the merged logs' run statistics, as a mismatch means tests may have been skipped or run twice.
+ *
+ * Result files are read a line at a time, and only the name, outcome, warning and time taken are kept
+ * for each test, so large runs can be merged with a small heap. If the same test appears more than once,
+ * the result read last wins, so results added later (such as from a rerun) overlay earlier ones.
+ */
+
+@SuppressWarnings("rawtypes")
+public class ResultsLogMerger {
+
+	private final static String FILE_EXTENSION = ".html"; // File extension of the result logs
+
+	private LinkedHashMap<String, NamedResult> results     // Merged results, hashed by test name
+		= new LinkedHashMap<String, NamedResult>();
+	private ArrayList<String> sources                      // One line for each result file read
+		= new ArrayList<String>();
+	private int duplicates = 0;                            // # of results replaced by a later one
+	private long sequentialTime = 0;                       // Sum of the time taken by each result read
+	private ArrayList<String> statistics                   // Extra lines for the run statistics section
+		= new ArrayList<String>();
+	private LinkedHashMap<String, ArrayList<HashMap<String, String>>> manifests // Shard manifests read,
+		= new LinkedHashMap<String, ArrayList<HashMap<String, String>>>();      // grouped by file name
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java Tests.ResultsLogMerger <output directory> <result directory> [<result directory> ...]");
+			return;
+		}
+
+		ResultsLogMerger merger = new ResultsLogMerger();
+		try {
+			for (String directory : Arrays.copyOfRange(args, 1, args.length)) {
+				merger.addDirectory(directory);
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println("Usage error: " + e.getMessage());
+			System.exit(2);
+		}
+		for (String problem : merger.checkShards()) {
+			System.out.println("WARNING: " + problem);
+		}
+		merger.write(args[0], "ResultsLog");
+		System.out.println("Merged " + merger.size() + " results into " + args[0]);
+	}
+
+	/*
+	 * Reads every Results*.jsonl file in the directory, or in its subdirectories if it has none. Throws
+	 * IllegalArgumentException if the directory doesn't exist or holds no result files, as reading no
+	 * results would make --rerun-failed run nothing and still report success.
+	 */
+	public void addDirectory(String directory) throws IOException {
+		File root = new File(directory);
+		if (!root.isDirectory()) {
+			throw new IllegalArgumentException("Result directory not found: " + directory);
+		}
+
+		int found = 0;
+		File[] files = findResultFiles(root);
+		if (files.length == 0) {
+			File[] subdirectories = root.listFiles(File::isDirectory);
+			if (subdirectories != null) {
+				Arrays.sort(subdirectories);
+				for (File subdirectory : subdirectories) {
+					for (File file : findResultFiles(subdirectory)) {
+						addFile(file.toPath());
+						found++;
+					}
+					addManifests(subdirectory);
+				}
+			}
+		}
+		for (File file : files) {
+			addFile(file.toPath());
+			found++;
+		}
+		if (found == 0) {
+			throw new IllegalArgumentException("No Results*.jsonl files in " + directory + " or its subdirectories");
+		}
+		addManifests(root);
+	}
+
+	/*
+	 * Checks the shard manifests read so far against each other. Returns a line for each problem, empty
+	 * if the shards match or there were none.
+	 */
+	public ArrayList<String> checkShards() {
+		ArrayList<String> problems = new ArrayList<String>();
+		for (Map.Entry<String, ArrayList<HashMap<String, String>>> entry : manifests.entrySet()) {
+			String name = entry.getKey();
+			ArrayList<HashMap<String, String>> shards = entry.getValue();
+			HashMap<String, String> first = shards.get(0);
+
+			// Every shard must agree on how the tests were split
+			for (String field : new String[] { "shards", "strategy", "totalTests", "historyRecords", "historyHash" }) {
+				LinkedHashSet<String> values = new LinkedHashSet<String>();
+				for (HashMap<String, String> shard : shards) {
+					values.add(String.valueOf(shard.get(field)));
+				}
+				if (values.size() > 1) {
+					problems.add(name + ": shards disagree on " + field + " " + values
+							+ (field.startsWith("history") ? ", they split the tests from different run histories" : ""));
+				}
+			}
+
+			// Every shard must be present once, and together hold every test
+			int count = (int) parseLong(first.get("shards"));
+			int[] seen = new int[count + 1];
+			long tests = 0;
+			for (HashMap<String, String> shard : shards) {
+				int index = (int) parseLong(shard.get("shard"));
+				if (index >= 1 && index <= count) {
+					seen[index]++;
+				}
+				tests += parseLong(shard.get("shardTests"));
+			}
+			for (int index = 1; index <= count; index++) {
+				if (seen[index] != 1) {
+					problems.add(name + ": shard " + index + " of " + count
+							+ (seen[index] == 0 ? " is missing" : " was read " + seen[index] + " times"));
+				}
+			}
+			long total = parseLong(first.get("totalTests"));
+			if (tests != total) {
+				problems.add(name + ": shards hold " + tests + " tests, expected " + total);
+			}
+		}
+		return problems;
+	}
+
+	/* Reads the shard manifests directly in a directory, if any */
+	private void addManifests(File directory) throws IOException {
+		File[] files = directory.listFiles((dir, name) -> name.startsWith("ShardManifest") && name.endsWith(".json"));
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			HashMap<String, String> manifest;
+			try {
+				String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+				manifest = Json.parseObject(json);
+			} catch (IllegalArgumentException e) {
+				System.out.println("Skipping bad shard manifest " + file + ": " + e.getMessage());
+				continue;
+			}
+			ArrayList<HashMap<String, String>> shards = manifests.get(file.getName());
+			if (shards == null) {
+				shards = new ArrayList<HashMap<String, String>>();
+				manifests.put(file.getName(), shards);
+			}
+			shards.add(manifest);
+		}
+	}
+
+	/*
+	 * Reads a JSON Lines result file, a line at a time
+	 */
+	public void addFile(Path file) throws IOException {
+		System.out.print("Reading " + file + "... ");
+
+		// Test logs are found from the result file's directory. Made relative to the output when written.
+		String logRoot = file.toAbsolutePath().normalize().getParent().toString();
+
+		int count = 0;
+		int lineNumber = 0;
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+
+				HashMap<String, String> fields;
+				try {
+					fields = Json.parseObject(line);
+				} catch (IllegalArgumentException e) {
+					System.out.println("Skipping bad line " + lineNumber + " in " + file + ": " + e.getMessage());
+					continue;
+				}
+				String name = fields.get("name");
+				if (name == null) {
+					continue;
+				}
+
+				NamedResult result = new NamedResult(name, "SUCCESSFUL".equals(fields.get("status")),
+						fields.get("failure"));
+				result.setDuration(parseLong(fields.get("duration")));
+				result.setAttempt((int) Math.max(1, parseLong(fields.get("attempts"))));
+				result.setLogRoot(logRoot);
+				if ("true".equals(fields.get("warning"))) {
+					TestRecord record = new TestRecord(name);
+					record.setWarning(true);
+					result.setRecord(record);
+				}
+
+				add(result);
+				count++;
+			}
+		}
+
+		sources.add(file + " (" + count + " results)");
+		System.out.println("Done");
+	}
+
+	/*
+	 * Adds a result, replacing any earlier result for the same test. Results without a log root have
+	 * their test log in the output directory.
+	 */
+	public void add(NamedResult result) {
+		NamedResult previous = results.put(result.getName(), result);
+		if (previous != null) {
+			duplicates++;
+			sequentialTime -= previous.getDuration();
+		}
+		sequentialTime += result.getDuration();
+	}
+
+	/* Returns the names of the failed tests, in the order they were read */
+	public LinkedHashSet<String> getFailedNames() {
+		LinkedHashSet<String> failed = new LinkedHashSet<String>();
+		for (NamedResult result : results.values()) {
+			if (!result.wasSuccessful()) {
+				failed.add(result.getName());
+			}
+		}
+		return failed;
+	}
+
+	/*
+	 * Removes every test from the list that didn't fail in the results read so far, for --rerun-failed
+	 */
+	public void retainFailed(List<Class> tests) {
+		LinkedHashSet<String> failed = getFailedNames();
+		int listed = tests.size();
+		tests.removeIf(test -> !failed.contains(TestExecutor.getTestName(test)));
+
+		System.out.println("Rerunning " + tests.size() + " of " + failed.size() + " previously failed tests");
+		if (tests.size() < failed.size()) {
+			System.out.println((failed.size() - tests.size()) + " failed tests aren't in the list of " + listed
+					+ " tests, and won't be rerun");
+		}
+	}
+
+	/*
+	 * Adds a rerun's results in place of the previous results for the same tests, and notes how many
+	 * now pass in the run statistics
+	 */
+	public void overlay(List<Class> tests, Map<Class, NamedResult> rerunResults) {
+		int rerun = 0;
+		int fixed = 0;
+		for (Class test : tests) {
+			NamedResult result = rerunResults.get(test);
+			if (result != null) {
+				add(result);
+				rerun++;
+				fixed += (result.wasSuccessful() ? 1 : 0);
+			}
+		}
+		addStatistic("Rerun", rerun + " previously failed tests rerun, " + fixed + " now pass, "
+				+ (rerun - fixed) + " still fail");
+	}
+
+	/* Adds a line to the run statistics section of the merged result logs */
+	public void addStatistic(String label, String value) {
+		statistics.add(label + ": " + value);
+	}
+
+	/*
+	 * Writes the merged result logs to the output directory, as name and name + "Fail". Only call once,
+	 * as each result's log root is replaced by its link.
+	 */
+	public void write(String outputDirectory, String name) throws IOException {
+		Path output = Paths.get(outputDirectory).toAbsolutePath().normalize();
+		File directory = output.toFile();
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+
+		// Links to the test logs are relative to the output directory. Each result file's directory
+		// is only worked out once.
+		HashMap<String, String> links = new HashMap<String, String>();
+		ArrayList<NamedResult> merged = new ArrayList<NamedResult>(results.size());
+		for (NamedResult result : results.values()) {
+			String logRoot = result.getLogRoot();
+			if (logRoot != null) {
+				String link = links.get(logRoot);
+				if (link == null) {
+					link = output.relativize(Paths.get(logRoot)).toString().replace(File.separatorChar, '/');
+					links.put(logRoot, link);
+				}
+				result.setLogRoot(link.isEmpty() ? null : link);
+			}
+			merged.add(result);
+		}
+
+		// The merged runs weren't timed as one run, so the logs leave out "Time taken" and give the sequential time
+		ResultsLogModel model = new ResultsLogModel(merged);
+		for (String source : sources) {
+			model.addStatistic("Merged from", source);
+		}
+		if (duplicates > 0) {
+			model.addStatistic("Duplicates", duplicates + " results replaced by a later result for the same test");
+		}
+		model.addStatistic("Sequential time", PhaseTimer.formatMillis(sequentialTime));
+		for (String problem : checkShards()) {
+			model.addStatistic("Shard check", problem);
+		}
+		for (String statistic : statistics) {
+			model.getStatistics().add(statistic);
+		}
+
+		ResultsLogPipeline pipeline = new ResultsLogPipeline(model, true);
+		pipeline.add(new ResultsLogWriter(output.toString(), name, FILE_EXTENSION, false));
+		pipeline.add(new ResultsLogWriter(output.toString(), name + "Fail", FILE_EXTENSION, true));
+		pipeline.writeAll();
+	}
+
+	/* Returns the # of merged results */
+	public int size() {
+		return results.size();
+	}
+
+	/* Finds the result files directly in a directory, sorted by name */
+	private static File[] findResultFiles(File directory) {
+		File[] files = directory.listFiles((dir, name) -> name.startsWith("Results") && name.endsWith(".jsonl"));
+		if (files == null) {
+			return new File[0];
+		}
+		Arrays.sort(files);
+		return files;
+	}
+
+	/* Parses a number field, treating a missing or bad value as 0 */
+	private static long parseLong(String value) {
+		if (value == null) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
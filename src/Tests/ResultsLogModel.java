@@ -0,0 +1,166 @@
+package Tests;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * ResultsLogModel
+ *
+ * The categories and tests of a run, built once and shared by every ResultsLogWriter that writes a
+ * result log for that run. Categories are kept in a tree, where each category indexes its subcategories
+ * by name, so finding an existing category takes constant time. Each level of the tree is sorted once.
+ *
+ * Writers pick which tests they show with a ResultsLogFilter, and get back the matching tests and the
+ * categories containing them, in the order they should be written.
+ */
+
+@SuppressWarnings("rawtypes")
+public class ResultsLogModel {
+
+	private ArrayList<ResultsLogNode> roots                // Top level categories and tests, sorted by name
+		= new ArrayList<ResultsLogNode>();
+	private HashMap<String, ResultsLogNode> rootIndex      // Top level categories, hashed by name
+		= new HashMap<String, ResultsLogNode>();
+	private boolean mismatch = false;                      // True if there were more tests than results
+	private ArrayList<String> statistics                   // Lines for the run statistics section of each log
+		= new ArrayList<String>();
+	private String timeTaken = null;                       // Time taken by the run, null to leave it out of the logs
+
+	/*
+	 * Constructor. Builds the category tree from the given tests and results. The list of tests is used
+	 * to access NamedResults in the hash. Each test in the List should have a corresponding result in the hash.
+	 */
+	public ResultsLogModel(List<Class> tests, HashMap<Class, NamedResult> results) {
+		if (tests.size() > results.size()) {
+			mismatch = true;
+		}
+
+		for (Class test : tests) {
+			NamedResult result = results.get(test);
+			if (result == null) {
+				mismatch = true;
+				continue;
+			}
+			add(result);
+		}
+		sort();
+	}
+
+	/*
+	 * Constructor. Builds the category tree from results alone, such as results read back from result
+	 * files when merging runs.
+	 */
+	public ResultsLogModel(Collection<NamedResult> results) {
+		for (NamedResult result : results) {
+			add(result);
+		}
+		sort();
+	}
+
+	/* Sorts each level once */
+	private void sort() {
+		Collections.sort(roots, ResultsLogNode.BY_NAME);
+		for (ResultsLogNode root : roots) {
+			root.sortChildren();
+		}
+	}
+
+	/*
+	 * Adds a test to the tree, creating any of its categories that don't exist yet.
+	 */
+	private void add(NamedResult result) {
+		// Splits the test name by '.', to seperate the categories and the test's name.
+		String[] testCategories = result.getName().split("\\.");
+
+		// Finds or creates each category along the test's path
+		ResultsLogNode parentCategory = null;
+		for (int i = 0; i < testCategories.length - 1; i++) {
+			if (parentCategory == null) {
+				parentCategory = rootIndex.get(testCategories[i]);
+				if (parentCategory == null) {
+					parentCategory = new ResultsLogNode(testCategories[i], 0, null);
+					rootIndex.put(testCategories[i], parentCategory);
+					roots.add(parentCategory);
+				}
+			}
+			else {
+				parentCategory = parentCategory.getOrAddCategory(testCategories[i]);
+			}
+		}
+
+		// Last part of the name will always be the test's name itself, so add it as a test
+		String name = testCategories[testCategories.length - 1];
+		if (parentCategory == null) {
+			ResultsLogNode test = new ResultsLogNode(name, 0, null);
+			test.setTest(true);
+			test.setResult(result);
+			roots.add(test);
+		}
+		else {
+			parentCategory.addTest(name, result);
+		}
+	}
+
+	/*
+	 * Returns the tests accepted by the filter, along with every category that contains at least one of
+	 * them, depth first. Each category comes directly before its subcategories and tests.
+	 */
+	public ArrayList<ResultsLogNode> select(ResultsLogFilter filter) {
+		ArrayList<ResultsLogNode> selected = new ArrayList<ResultsLogNode>();
+		for (ResultsLogNode root : roots) {
+			select(root, filter, selected);
+		}
+		return selected;
+	}
+
+	/*
+	 * Adds a node and the selected nodes under it. Returns false, leaving the list unchanged, if
+	 * nothing under the node was selected.
+	 */
+	private boolean select(ResultsLogNode node, ResultsLogFilter filter, ArrayList<ResultsLogNode> selected) {
+		if (node.isTest()) {
+			if (filter.include(node.getResult())) {
+				selected.add(node);
+				return true;
+			}
+			return false;
+		}
+
+		selected.add(node);
+		boolean any = false;
+		for (ResultsLogNode child : node.getChildren()) {
+			any |= select(child, filter, selected);
+		}
+
+		// Nothing was added after this category, so it is still the last element
+		if (!any) {
+			selected.remove(selected.size() - 1);
+		}
+		return any;
+	}
+
+	/*
+	 * Adds a line to the run statistics section, which is written after the main body of each result
+	 * log. Used for information about the run as a whole, like driver pool usage.
+	 */
+	public void addStatistic(String label, String value) {
+		statistics.add(label + ": " + value);
+	}
+
+	/* Sets the time taken by the run, as written at the end of each log */
+	public void setTimeTaken(String timeTaken) {
+		this.timeTaken = timeTaken;
+	}
+
+	/* Returns the time taken by the run, or null if none was set */
+	public String getTimeTaken() {
+		return timeTaken;
+	}
+
+	/* Getters */
+	public boolean hasMismatch() { return mismatch; }
+	public ArrayList<String> getStatistics() { return statistics; }
+}
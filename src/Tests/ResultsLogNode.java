@@ -1,4 +1,10 @@
 package Tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
 /*
  * ResultsLogNode
  * 
@@ -14,12 +20,28 @@ public class ResultsLogNode implements Comparable<ResultsLogNode>{
 	private boolean isTest = false; // If false, this node represents a category (default).
 	private ResultsLogNode parent;  // The immediate supercategory, whose depth = this.depth - 1
 	private NamedResult result;     // Only initialized if this is a test node. Saves that test's result + name.
+	private ArrayList<ResultsLogNode> children         // Subcategories and tests directly under this category
+		= new ArrayList<ResultsLogNode>();
+	private HashMap<String, ResultsLogNode> categories // Subcategories directly under this category, hashed by name
+		= new HashMap<String, ResultsLogNode>();
+	private final String fullName;  // Cached toString(). Parents never change, so this is computed once.
+	private final String path;      // Cached getPath(), computed once for the same reason.
 	
 	/* Constructor */
 	public ResultsLogNode (String name, Integer depth, ResultsLogNode parent) {
 		this.name = name;
 		this.depth = depth;
 		this.parent = parent;
+		
+		// Builds on the parent's cached strings, so each node only does one concatenation
+		if (parent == null) {
+			this.fullName = name;
+			this.path = "./" + name;
+		}
+		else {
+			this.fullName = parent.toString() + "." + name;
+			this.path = parent.getPath() + "/" + name;
+		}
 	}
 	
 	/* Setters */
@@ -36,6 +58,50 @@ public class ResultsLogNode implements Comparable<ResultsLogNode>{
 	public boolean isTest() { return isTest; } // Equivalent to "getTest()"
 	public ResultsLogNode getParent() { return parent; }
 	public NamedResult getResult() { return result; }
+	public ArrayList<ResultsLogNode> getChildren() { return children; }
+	
+	/*
+	 * Returns the subcategory directly under this category with the given name, creating it if it
+	 * does not exist yet.
+	 */
+	public ResultsLogNode getOrAddCategory(String name) {
+		ResultsLogNode category = categories.get(name);
+		if (category == null) {
+			category = new ResultsLogNode(name, depth + 1, this);
+			categories.put(name, category);
+			children.add(category);
+		}
+		return category;
+	}
+	
+	/*
+	 * Adds a test directly under this category. Tests are not checked for duplicates.
+	 */
+	public ResultsLogNode addTest(String name, NamedResult result) {
+		ResultsLogNode test = new ResultsLogNode(name, depth + 1, this);
+		test.setTest(true);
+		test.setResult(result);
+		children.add(test);
+		return test;
+	}
+	
+	/*
+	 * Sorts the children of this node by name, and then the children of each of those, and so on.
+	 * The sort is stable, so a category and a test with the same name keep the order they were added in.
+	 */
+	public void sortChildren() {
+		Collections.sort(children, BY_NAME);
+		for (ResultsLogNode child : children) {
+			child.sortChildren();
+		}
+	}
+	
+	/* Orders sibling nodes by name */
+	public final static Comparator<ResultsLogNode> BY_NAME = new Comparator<ResultsLogNode>() {
+		public int compare(ResultsLogNode a, ResultsLogNode b) {
+			return a.getName().compareTo(b.getName());
+		}
+	};
 	
 	/* 
 	 * Returns a different String depending on whether or not the corresponding test was successful.
@@ -43,7 +109,11 @@ public class ResultsLogNode implements Comparable<ResultsLogNode>{
 	 * a category instead of a test.
 	 */
 	public String wasSuccessful() {
-		if (isTest && result.wasSuccessful()) {
+		if (isTest && result.isFlaky()) {
+			return "<span style=\"color: #0A0\">SUCCESSFUL</span> <span style=\"color: #C80\">FLAKY (passed on attempt "
+					+ result.getAttempts() + ")</span>";
+		}
+		else if (isTest && result.wasSuccessful()) {
 			return "<span style=\"color: #0A0\">SUCCESSFUL</span>";
 		}
 		else if (isTest && !result.wasSuccessful()){
@@ -57,28 +127,31 @@ public class ResultsLogNode implements Comparable<ResultsLogNode>{
 	
 	/*
 	 * Returns a path to a local file, which should correspond to the test log for the coresponding test.
-	 * Used to create links to test logs in the result log.
+	 * Used to create links to test logs in the result log. Cached when the node is created.
 	 */
 	public String getPath() {
-		String path;
-		if (parent == null)
-			path = "./" + name;
-		else
-			path = parent.getPath() + "/" + name;
-		
 		return path;
 	}
 	
+	/*
+	 * Returns the link to this test's log, without the file extension. Same as getPath(), unless the
+	 * test log is in another directory, as it is for merged result logs.
+	 */
+	public String getLogLink() {
+		if (result == null || result.getLogRoot() == null) {
+			return path;
+		}
+		String root = result.getLogRoot();
+		return (root.startsWith("..") ? root : "./" + root) + path.substring(1);
+	}
+	
 	/*
 	 * The full name of this category. Calls parents in order to ensure the name is unique - tests for
 	 * Lists and Constituents may have the same name (i.e. "Edit"), but different parents, so their
-	 * toString() will be different.
+	 * toString() will be different. Cached when the node is created, so sorting doesn't allocate.
 	 */
 	public String toString() {
-		if (parent == null)
-			return name;
-		else
-			return parent + "." + name;
+		return fullName;
 	}
 
 	/*
@@ -0,0 +1,72 @@
+package Tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * ResultsLogPipeline
+ *
+ * Writes every result log for a run (full, failed only, per suite, etc.) from a single shared
+ * ResultsLogModel, so the categories are built and sorted once no matter how many logs are written.
+ * Writers only read the model, so they can optionally be run at the same time.
+ */
+
+public class ResultsLogPipeline {
+
+	private ResultsLogModel model;               // Categories and tests shared by every writer
+	private ArrayList<ResultsLogWriter> writers  // Result logs to write
+		= new ArrayList<ResultsLogWriter>();
+	private boolean concurrent;                  // If true, each result log is written on its own thread
+
+	/* Constructor */
+	public ResultsLogPipeline(ResultsLogModel model, boolean concurrent) {
+		this.model = model;
+		this.concurrent = concurrent;
+	}
+
+	/* Adds a result log to be written */
+	public void add(ResultsLogWriter writer) {
+		writers.add(writer);
+	}
+
+	/*
+	 * Writes every result log that was added. Returns once all of them have been written and closed.
+	 */
+	public void writeAll() throws IOException {
+		if (!concurrent || writers.size() < 2) {
+			for (ResultsLogWriter writer : writers) {
+				writer.writeResults(model);
+			}
+			return;
+		}
+
+		int threads = Math.min(writers.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (ResultsLogWriter writer : writers) {
+				futures.add(pool.submit(() -> {
+					writer.writeResults(model);
+					return null;
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing result logs", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException("Result log writer failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
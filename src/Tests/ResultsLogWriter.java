@@ -1,8 +1,8 @@
 package Tests;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 
 /*
  * ResultsLogWriter
@@ -13,22 +13,19 @@ import java.util.HashMap;
  * Also creates a table of contents, which links to each category that directly contains a
  * test(s).
  * 
- * Optionally, can log only failed tests. This will remove passed tests from the given ArrayList
- * and HashMap references, so do not use this option until after you are done with those.
+ * Optionally, can log only failed tests, or any other subset picked by a ResultsLogFilter.
+ * Several writers can share one ResultsLogModel, so the categories are only built once per run.
  */
 
 @SuppressWarnings("rawtypes")
 public class ResultsLogWriter {
 
 	private String name;                          // Filename for the result log
-	private FileWriter log;                       // FileWriter for this result log
-	private ArrayList<Class> tests;               // List of the tests, as classes
-	private HashMap<Class, NamedResult> results;  // Hash of the results for the tests, hashed 
-	                                              // by the corresponding class.
-	private boolean failedOnly;                   // If true, removes passed tests from test and results. Defaults to false.
-	private ArrayList<ResultsLogNode> categories; // List of the categories and tests extracted from results.
-	private ArrayList<String> tocLinks            // Holds the category names that will be used in the table of contents.
-		= new ArrayList<String>();
+	private AsyncLogWriter log;                   // Writer for this result log, written by LogOutputService
+	private ResultsLogFilter filter;              // Picks the tests shown in this result log
+	private ArrayList<ResultsLogNode> categories; // List of the categories and tests shown, in order.
+	private LinkedHashSet<String> tocLinks        // Holds the category names that will be used in the table of contents.
+		= new LinkedHashSet<String>();
 	
 	private String font = "Consolas";                // Selected font for the result log
 	private String tab = "&nbsp;&nbsp;&nbsp;&nbsp;"; // Format specific tab of 4 spaces
@@ -39,14 +36,16 @@ public class ResultsLogWriter {
 	private int spaceBuffer = 0;                     // Used in aligning test result statuses.
 	private int maxDepth = 0;                        // Used in aligning test result statuses.
 
-	/* Constructor */
+	/* Constructor. If failedOnly is true, only failed tests are written. */
 	public ResultsLogWriter(String path, String name, String fileExtension, boolean failedOnly) throws IOException {
+		this(path, name, fileExtension, (failedOnly ? ResultsLogFilter.FAILED_ONLY : ResultsLogFilter.ALL));
+	}
+
+	/* Constructor, only tests accepted by the filter are written */
+	public ResultsLogWriter(String path, String name, String fileExtension, ResultsLogFilter filter) throws IOException {
 		this.name = name;
-		this.log = new FileWriter(path + "/" + name + fileExtension);
-		this.tests = new ArrayList<Class>();
-		this.results = new HashMap<Class, NamedResult>();
-		this.failedOnly = failedOnly;
-		this.categories = new ArrayList<ResultsLogNode>();
+		this.log = LogOutputService.get().open(path + "/" + name + fileExtension);
+		this.filter = filter;
 	}
 
 	/*
@@ -55,6 +54,15 @@ public class ResultsLogWriter {
 	 */
 	public void writeResults(ArrayList<Class> newTests, HashMap<Class, NamedResult> newResults)
 			throws IOException {
+		ResultsLogModel model = new ResultsLogModel(newTests, newResults);
+		model.setTimeTaken(RunContext.current().getTimeLength());
+		writeResults(model);
+	}
+
+	/*
+	 * Writes the tests in the model that are accepted by this writer's filter to the result log.
+	 */
+	public void writeResults(ResultsLogModel model) throws IOException {
 
 		// Creates div for styling, and gives the page a header corresponding to the filename.
 		write("<div style=\"font-family: " + font + "\">");
@@ -62,117 +70,44 @@ public class ResultsLogWriter {
 		
 		// If there are more tests than there are results, the user is warned of this when opening the page.
 		// This should never appear normally (I've never seen it occur personally).
-		if (newTests.size() > newResults.size()) {
+		if (model.hasMismatch()) {
 			write( "<h1 style=\"color: #f00\"" +
 					   "ERROR: Mismatch in # of tests vs # of results. This page may not have accurate information." +
 					   "</h1><br />"
 					 );
 			flush();
 		}
-		
-		// Creates a copy of HashMap
-		for (Class test : newTests) {
-			tests.add(test);
-			results.put(test, newResults.get(test));
-		}
 
-		// Remove all passed tests from the hash and list if this instance of 
-		// ResultsLogWriter is set to only print test failures.
-		if (failedOnly) {
-			for (int i = 0; i < tests.size(); i++) {
-				if (results.get(tests.get(i)).wasSuccessful()) {
-					results.remove(tests.get(i));
-					tests.remove(tests.get(i));
-					i--;
-				}
+		// Get the categories and tests for this result log, in order
+		categories = model.select(filter);
+		for (ResultsLogNode category : categories) {
+			if (category.isTest()) {
+				// Calculate the space buffer and max depth for formatting when writing main body
+				spaceBuffer = (spaceBuffer > category.getName().length() ? 
+						spaceBuffer : category.getName().length()); 
+				maxDepth = (maxDepth > category.getDepth() ?
+						maxDepth : category.getDepth());
 			}
 		}
-
-		// Create and sort categories for tests and their results
-		createCategories();
-		Collections.sort(categories);
 		
 		//Write table of contents
 		writeTOC();
 		// Write main body
 		writeMainBody();
 
-		// Write time taken for all tests
-		write(nl + "<strong>Time taken: " + MyTotalTime.getTimeLength() + "</strong>" + nl);
+		// Write run statistics, if any were given
+		writeStatistics(model.getStatistics());
+
+		// Write time taken for all tests, if the run was timed
+		if (model.getTimeTaken() != null) {
+			write(nl + "<strong>Time taken: " + model.getTimeTaken() + "</strong>" + nl);
+		}
 		
 		// Close div for styling
 		write("</div>");
 		close();
 	}
 
-	/*
-	 * Fills the categories list in order to facilitate writing results later. Includes a check
-	 * for duplicates to prevent categories from being non-unique.
-	 */
-	private void createCategories() {
-		for (Class test : tests) {	
-			
-			// Get result for this test and its name
-			NamedResult currResult = results.get(test);			
-			String testNameFull = results.get(test).getName();
-			
-			// Splits the test name by '.', to seperate the categories and the test's name.
-			String[] testCategories = testNameFull.split("\\.");
-			
-			ResultsLogNode parentCategory = null;
-			for (int i = 0; i < testCategories.length; i++) {
-				
-				ResultsLogNode currCategory = new ResultsLogNode(testCategories[i], i, parentCategory);
-				
-				// Last pass will always be the test's name itsel, so special handle
-				if (i == testCategories.length - 1) {
-					// Adds as a test name rather than category. Doesn't bother checking for duplicates
-					currCategory.setTest(true);
-					currCategory.setResult(currResult);
-					categories.add(currCategory);
-					
-					// Calculate the space buffer and max depth for formatting when writing main body
-					spaceBuffer = (spaceBuffer > currCategory.getName().length() ? 
-							spaceBuffer : currCategory.getName().length()); 
-					maxDepth = (maxDepth > currCategory.getDepth() ?
-							maxDepth : currCategory.getDepth());
-				}
-				else {
-					// Check if category already exists in categories list. If not, add to list with proper depth.
-					int index = assignCategoryDepth(currCategory);
-					
-					if (index == -1) { // Not a duplicate
-						categories.add(currCategory);
-						parentCategory = currCategory;
-					}
-					else {
-						parentCategory = categories.get(index);
-					}
-				}
-				
-			}
-		}
-	}
-	
-	/*
-	 * Checks if a category already exists in the categories list. If it does, returns the index.
-	 * Else, returns -1.
-	 */
-	private int assignCategoryDepth(ResultsLogNode currCategory) {		
-		for (int i = 0; i < categories.size(); i++) {
-			
-			// A category is a duplicate if it has the same name, same depth, and same
-			// parent (by reference, not value) as a preexisting category
-			if (categories.get(i).getName().equals(currCategory.getName()) &&
-				categories.get(i).getDepth().equals(currCategory.getDepth()) &&
-				categories.get(i).getParent() == currCategory.getParent()) {
-				return i;
-			}
-		}
-		
-		return -1;
-	}
-	
 	/*
 	 * Writes the table of contents with approriate links, which are generated the the
 	 * ResultLogNode's toString(), which are all unique. Each entry links to a category
@@ -180,10 +115,10 @@ public class ResultsLogWriter {
 	 */
 	private void writeTOC() throws IOException {		
 		
-		// Gets the entries for the ToC, catching repeats.
+		// Gets the entries for the ToC. Repeats are ignored by the set.
 		for (ResultsLogNode category : categories) {
 			ResultsLogNode parent = category.getParent();
-			if (category.isTest() && !tocLinksContains(parent.toString())) {
+			if (category.isTest()) {
 				tocLinks.add(parent.toString());
 			}
 		}
@@ -201,18 +136,6 @@ public class ResultsLogWriter {
 		write("</ul>");
 	}
 	
-	/*
-	 * Checks if a potential entry for the ToC already exists in the list of ToC entries.
-	 */
-	private boolean tocLinksContains(String name) {
-		for (String link : tocLinks) {
-			if (link.equals(name)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	/*
 	 * Writes the main body of the result log, which is comprised of the various categories,
 	 * test names, and corespnding test results.
@@ -231,13 +154,13 @@ public class ResultsLogWriter {
 			// Bold category names and add ID for ToC links
 			if (!category.isTest()) {
 				write("<span style=\"font-weight: bold\">");
-				if (tocLinksContains(category.toString())) {
+				if (tocLinks.contains(category.toString())) {
 					write("<span id=\"" + category.toString() + "\">");
 				}
 			}
 			// Add link to test log for each test
 			else {
-				write("<a href=\"" + category.getPath() + fileExtension + "\">");
+				write("<a href=\"" + category.getLogLink() + fileExtension + "\">");
 			}
 			
 			// Writes category
@@ -260,19 +183,32 @@ public class ResultsLogWriter {
 					
 			// Close spans for category names
 			if (!category.isTest()) {
-				if (tocLinksContains(category.toString())) {
+				if (tocLinks.contains(category.toString())) {
 					write("</span>");
 				}
 				write("</span>");
 			}
 			
 			write(nl);
-			flush();
 		}
 	}
 	
-	/* Helper functions to make FileWriter calls a little simpler */
+	/*
+	 * Writes the run statistics section. Writes nothing if no statistics were added.
+	 */
+	private void writeStatistics(ArrayList<String> statistics) throws IOException {
+		if (statistics.isEmpty()) {
+			return;
+		}
+
+		write("<h2>Run Statistics</h2>");
+		for (String statistic : statistics) {
+			write(statistic + nl);
+		}
+	}
+
+	/* Helper functions to make writer calls a little simpler. Closing waits until the log is on disk. */
 	private void flush() throws IOException { log.flush(); }
 	private void write(String myString) throws IOException { log.write(myString); }
-	private void close() throws IOException { log.close(); }
+	private void close() throws IOException { log.sync(); log.close(); }
 }
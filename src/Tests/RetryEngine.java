@@ -0,0 +1,177 @@
+package Tests;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/*
+ * RetryEngine
+ *
+ * Retries driver actions that fail for timing reasons, like clicking an element that was just replaced
+ * or switching to a frame that hasn't loaded yet. Instead of sleeping a fixed time between attempts,
+ * the wait starts small and doubles after each miss (exponential backoff), with some randomness
+ * (jitter) so tests on a shared machine don't retry in lockstep:
+ *
+ *   wait = random between half and all of min(MAX_DELAY, INITIAL_DELAY * 2^misses)
+ *
+ * so an action that is ready almost straight away is retried within milliseconds, while a slow page
+ * is polled about as often as the old fixed 50ms wait. Attempts stop at a deadline rather than after a
+ * number of attempts, and the last exception is thrown if the action never succeeds.
+ *
+ * Counters are kept for each type of action (attempts, misses, time spent waiting) so they can be
+ * reported in the test log. Each driver has its own engine, used by one test at a time.
+ */
+
+public class RetryEngine {
+
+	private final static long INITIAL_DELAY = 2;  // First wait after a miss, in milliseconds
+	private final static long MAX_DELAY = 50;     // Longest wait between attempts, in milliseconds
+
+	private LinkedHashMap<String, ActionStats> stats // Counters for each type of action, in first use order
+		= new LinkedHashMap<String, ActionStats>();
+
+	/*
+	 * Runs the action until it succeeds, retrying while it throws one of the retryable exception types,
+	 * until timeoutMillis have passed. Any other exception is thrown straight away. Returns the action's
+	 * result.
+	 */
+	@SafeVarargs
+	public final <T> T retry(String actionType, long timeoutMillis, Supplier<T> action,
+			Class<? extends RuntimeException>... retryOn) throws InterruptedException {
+		ArrayList<Class<? extends RuntimeException>> types = new ArrayList<Class<? extends RuntimeException>>();
+		for (Class<? extends RuntimeException> type : retryOn) {
+			types.add(type);
+		}
+		return run(actionType, timeoutMillis, action, types);
+	}
+
+	/*
+	 * Same as retry(), for actions without a result
+	 */
+	@SafeVarargs
+	public final void retry(String actionType, long timeoutMillis, Runnable action,
+			Class<? extends RuntimeException>... retryOn) throws InterruptedException {
+		ArrayList<Class<? extends RuntimeException>> types = new ArrayList<Class<? extends RuntimeException>>();
+		for (Class<? extends RuntimeException> type : retryOn) {
+			types.add(type);
+		}
+		run(actionType, timeoutMillis, () -> {
+			action.run();
+			return null;
+		}, types);
+	}
+
+	/* Runs the action for retry(), with the retryable exception types as a list */
+	private <T> T run(String actionType, long timeoutMillis, Supplier<T> action,
+			List<Class<? extends RuntimeException>> retryOn) throws InterruptedException {
+		ActionStats actionStats = getStats(actionType);
+		long start = System.nanoTime();
+		long deadline = start + timeoutMillis * 1000000;
+		long waitNanos = 0;
+		int misses = 0;
+
+		try {
+			while (true) {
+				actionStats.attempts++;
+				try {
+					T result = action.get();
+					actionStats.calls++;
+					return result;
+				} catch (RuntimeException e) {
+					if (!isRetryable(e, retryOn)) {
+						actionStats.calls++;
+						actionStats.failures++;
+						throw e;
+					}
+
+					// Gives up once the deadline has passed, with the last exception
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						actionStats.calls++;
+						actionStats.failures++;
+						System.out.println(actionType + " gave up after " + (misses + 1) + " attempts: " + e.getClass().getSimpleName());
+						throw e;
+					}
+
+					long delay = Math.min(MAX_DELAY, INITIAL_DELAY << Math.min(misses, 16));
+					long sleepNanos = Math.min(remaining,
+							ThreadLocalRandom.current().nextLong(delay / 2, delay + 1) * 1000000);
+					misses++;
+					actionStats.misses++;
+					long sleepStart = System.nanoTime();
+					Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+					waitNanos += System.nanoTime() - sleepStart;
+				}
+			}
+		} finally {
+			actionStats.waitNanos += waitNanos;
+			actionStats.totalNanos += System.nanoTime() - start;
+		}
+	}
+
+	/* Clears the counters, such as when a pooled driver is given to a new test */
+	public synchronized void reset() {
+		stats.clear();
+	}
+
+	/* Returns true if any action has been run since the counters were last cleared */
+	public synchronized boolean hasStats() {
+		return !stats.isEmpty();
+	}
+
+	/*
+	 * Returns the counters as an HTML table, for the test log
+	 */
+	public synchronized String getReport() {
+		StringBuilder report = new StringBuilder();
+		report.append("<table style=\"font-family: Consolas\"><tr><th align=\"left\">Action</th>"
+				+ "<th>Calls</th><th>Attempts</th><th>Retries</th><th>Failed</th><th>Time waiting</th><th>Time taken</th></tr>");
+		for (Map.Entry<String, ActionStats> entry : stats.entrySet()) {
+			ActionStats actionStats = entry.getValue();
+			report.append("<tr><td>").append(entry.getKey()).append("</td>")
+				  .append("<td align=\"right\">").append(actionStats.calls).append("</td>")
+				  .append("<td align=\"right\">").append(actionStats.attempts).append("</td>")
+				  .append("<td align=\"right\">").append(actionStats.misses).append("</td>")
+				  .append("<td align=\"right\">").append(actionStats.failures).append("</td>")
+				  .append("<td align=\"right\">").append(PhaseTimer.formatMillis(actionStats.waitNanos / 1000000)).append("</td>")
+				  .append("<td align=\"right\">").append(PhaseTimer.formatMillis(actionStats.totalNanos / 1000000)).append("</td></tr>");
+		}
+		report.append("</table>");
+		return report.toString();
+	}
+
+	/* Gets the counters for an action type, creating them on first use */
+	private synchronized ActionStats getStats(String actionType) {
+		ActionStats actionStats = stats.get(actionType);
+		if (actionStats == null) {
+			actionStats = new ActionStats();
+			stats.put(actionType, actionStats);
+		}
+		return actionStats;
+	}
+
+	/* Returns true if the exception is one of the retryable types */
+	private static boolean isRetryable(RuntimeException e, List<Class<? extends RuntimeException>> retryOn) {
+		for (Class<? extends RuntimeException> type : retryOn) {
+			if (type.isInstance(e)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Counters for one type of action
+	 */
+	private static class ActionStats {
+		long calls = 0;       // # of times the action was asked for
+		long attempts = 0;    // # of times the action was tried, including retries
+		long misses = 0;      // # of attempts that threw a retryable exception and were retried
+		long failures = 0;    // # of calls that never succeeded
+		long waitNanos = 0;   // Time spent waiting between attempts
+		long totalNanos = 0;  // Time spent in the action, including waiting
+	}
+}
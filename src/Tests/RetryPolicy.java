@@ -0,0 +1,116 @@
+package Tests;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.notification.Failure;
+
+/*
+ * RetryPolicy
+ *
+ * Decides which failed test classes TestExecutor runs again at the end of a run. A failed test is
+ * retried if:
+ *
+ *   - it has had fewer than maxAttempts attempts,
+ *   - every one of its failures was caused by one of the retryable exception types (anywhere in the
+ *     exception's cause chain), so real failures like assertions and warnings aren't retried, and
+ *   - the run's retry budget isn't used up. The budget is shared by every test, so a broken
+ *     environment can't make a run take maxAttempts times as long.
+ *
+ * The default policy never retries.
+ */
+
+@SuppressWarnings("rawtypes")
+public class RetryPolicy {
+
+	public final static String[] DEFAULT_RETRY_ON = { // Transient failures, usually from timing or the browser
+		"org.openqa.selenium.StaleElementReferenceException",
+		"org.openqa.selenium.TimeoutException"
+	};
+
+	public final static RetryPolicy NONE = new RetryPolicy(1, 0, new String[0]);
+
+	private int maxAttempts;                      // Most times a test class is run, including the first
+	private int budget;                           // Most retries for the whole run
+	private AtomicInteger used                    // Retries taken from the budget so far
+		= new AtomicInteger();
+	private ArrayList<Class> retryOn              // Exception types worth retrying
+		= new ArrayList<Class>();
+
+	/*
+	 * Constructor. Exception types are given by their full class name. Names that can't be found are
+	 * reported and ignored.
+	 */
+	public RetryPolicy(int maxAttempts, int budget, String[] retryOn) {
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.budget = Math.max(0, budget);
+		for (String name : retryOn) {
+			try {
+				this.retryOn.add(Class.forName(name.trim()));
+			} catch (ClassNotFoundException e) {
+				System.out.println("Unknown exception type for retries: " + name + ", ignoring");
+			}
+		}
+	}
+
+	/* Returns true if a test can be retried at all */
+	public boolean isEnabled() {
+		return maxAttempts > 1 && budget > 0 && !retryOn.isEmpty();
+	}
+
+	/*
+	 * Returns true if the result should be retried, without taking from the budget
+	 */
+	public boolean shouldRetry(NamedResult result) {
+		if (!isEnabled() || result.wasSuccessful() || result.getAttempts() >= maxAttempts
+				|| result.getResult() == null || result.getResult().getFailures().isEmpty()) {
+			return false;
+		}
+		for (Failure failure : result.getResult().getFailures()) {
+			if (!isRetryable(failure.getException())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Takes one retry from the budget. Returns false if the budget is used up.
+	 */
+	public boolean takeRetry() {
+		while (true) {
+			int current = used.get();
+			if (current >= budget) {
+				return false;
+			}
+			if (used.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/* Returns true if the exception, or anything in its cause chain, is a retryable type */
+	private boolean isRetryable(Throwable exception) {
+		for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+			for (Class type : retryOn) {
+				if (type.isInstance(cause)) {
+					return true;
+				}
+			}
+			if (cause.getCause() == cause) {
+				break;
+			}
+		}
+		return false;
+	}
+
+	/* Returns a one line summary, for the result logs */
+	public String getStatistics() {
+		return used.get() + " of " + budget + " retries used, up to " + maxAttempts + " attempts per test";
+	}
+
+	/* Getters */
+	public int getMaxAttempts() { return maxAttempts; }
+	public int getBudget() { return budget; }
+	public int getUsed() { return used.get(); }
+}
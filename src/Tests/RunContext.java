@@ -0,0 +1,96 @@
+package Tests;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/*
+ * RunContext
+ *
+ * Everything that belongs to a single run of the test runner: when it started, how long it took, where
+ * its logs go, which DriverProfile its tests use, and the DriverPrelauncher starting their drivers.
+ * Each call to SelTest.main or SuiteRunner.run makes its own, so runs in the same JVM (one after
+ * another, or at the same time) don't share a start time or log directory.
+ *
+ * The runner binds its context to every thread running one of its tests, so MyTest can find it. Tests
+ * run some other way (such as straight from an IDE) share a default context, created on first use.
+ */
+
+public class RunContext {
+
+	private static ThreadLocal<RunContext> current = new ThreadLocal<RunContext>(); // Context for the test on this thread
+	private static RunContext fallback = null;   // Context for tests run without a runner
+
+	private final long startNanos = System.nanoTime();           // When the run started, for timing
+	private final long startEpoch = System.currentTimeMillis();  // When the run started, in Unix milliseconds
+	private final String timestamp;              // Formatted start date, used in the log directory's name
+	private volatile long endNanos = -1;         // When the run finished, -1 until then
+	private String logRoot;                      // Directory for this run's logs
+	private DriverProfile driverProfile          // Profile for tests that don't choose their own
+		= DriverProfile.FAITHFUL;
+	private DriverPrelauncher prelauncher = null; // Launches drivers ahead of the tests, null if off
+
+	/* Constructor, logs go to TestLogs_<date> in the working directory */
+	public RunContext() {
+//		// Timestamp, tracks down to the second
+//		DateTimeFormatter dtf = DateTimeFormatter.ofPattern("_yyyy-MM-dd_HH-mm-ss");
+
+		// Timestamp, tracks down to the day
+		DateTimeFormatter dtf = DateTimeFormatter.ofPattern("_yyyy-MM-dd");
+		timestamp = dtf.format(LocalDateTime.now());
+		logRoot = System.getProperty("user.dir") + "/TestLogs" + timestamp;
+	}
+
+	/* Binds the context to the current thread */
+	public static void bind(RunContext context) {
+		current.set(context);
+	}
+
+	/* Unbinds the current thread's context */
+	public static void unbind() {
+		current.remove();
+	}
+
+	/* Returns the context bound to the current thread, or the default context if there is none */
+	public static RunContext current() {
+		RunContext context = current.get();
+		if (context != null) {
+			return context;
+		}
+		synchronized (RunContext.class) {
+			if (fallback == null) {
+				fallback = new RunContext();
+			}
+			return fallback;
+		}
+	}
+
+	/* Marks the run as finished. Only the first call counts. */
+	public void finish() {
+		if (endNanos < 0) {
+			endNanos = System.nanoTime();
+		}
+	}
+
+	/* Returns the time from the start of the run until it finished, or until now, in milliseconds */
+	public long getElapsedMillis() {
+		long end = (endNanos >= 0 ? endNanos : System.nanoTime());
+		return (end - startNanos) / 1000000;
+	}
+
+	/* Returns the time taken by the run, such as "0h 1m 2s 345ms" */
+	public String getTimeLength() {
+		return PhaseTimer.formatMillis(getElapsedMillis());
+	}
+
+	/* Setters */
+	public void setLogRoot(String logRoot) { this.logRoot = logRoot; }
+	public void setDriverProfile(DriverProfile driverProfile) { this.driverProfile = driverProfile; }
+	public void setPrelauncher(DriverPrelauncher prelauncher) { this.prelauncher = prelauncher; }
+
+	/* Getters */
+	public String getTimestamp() { return timestamp; }
+	public long getStartEpoch() { return startEpoch; }
+	public String getLogRoot() { return logRoot; }
+	public DriverProfile getDriverProfile() { return driverProfile; }
+	public DriverPrelauncher getPrelauncher() { return prelauncher; }
+}
@@ -0,0 +1,234 @@
+package Tests;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * RunDashboard
+ *
+ * Optional live view of a run, served from the JDK's built-in HTTP server on localhost only. The page
+ * at / subscribes to /events, which streams test start/finish events as server-sent events. Each event
+ * carries the full state of the run (counts, running tests and how long they've been running, elapsed
+ * time), so the page never has to reload anything. Throughput is worked out by the page from the counts.
+ */
+
+public class RunDashboard implements TestExecutor.RunListener {
+
+	private final static int MAX_QUEUED_EVENTS = 10000; // Clients this far behind are dropped
+	private final static long KEEP_ALIVE_SECONDS = 15;  // Time between keep-alive comments when idle
+	private final static String DONE = "done";          // Name of the event sent when the run ends
+
+	private HttpServer server;                           // Serves the page and the event stream
+	private ExecutorService handlers;                    // Threads for open connections
+	private CopyOnWriteArrayList<LinkedBlockingQueue<String>> clients // Events waiting to be sent, one queue per page
+		= new CopyOnWriteArrayList<LinkedBlockingQueue<String>>();
+
+	private int total = 0;                               // # of tests in the run
+	private int started = 0;                             // # of tests started
+	private int passed = 0;                              // # of tests passed
+	private int failed = 0;                              // # of tests failed
+	private long startNanos = System.nanoTime();         // Start of the run
+	private LinkedHashMap<String, Long> running          // Tests currently running, and when they started
+		= new LinkedHashMap<String, Long>();
+
+	/*
+	 * Starts the server on the given port, bound to the loopback address only.
+	 */
+	public RunDashboard(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		handlers = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "SelTest-dashboard");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(handlers);
+		server.createContext("/events", this::handleEvents);
+		server.createContext("/", this::handlePage);
+		server.start();
+		System.out.println("Live dashboard at " + getUrl());
+	}
+
+	/* Returns the address of the dashboard page */
+	public String getUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/";
+	}
+
+	/* Sets the total # of tests in the run, and resets the counts */
+	public synchronized void start(int total) {
+		this.total = total;
+		started = 0;
+		passed = 0;
+		failed = 0;
+		running.clear();
+		startNanos = System.nanoTime();
+		broadcast("run", null, null, 0);
+	}
+
+	public synchronized void testStarted(String testName) {
+		started++;
+		running.put(testName, System.nanoTime());
+		broadcast("started", testName, null, 0);
+	}
+
+	public synchronized void testFinished(NamedResult result) {
+		running.remove(result.getName());
+		if (result.wasSuccessful()) {
+			passed++;
+		}
+		else {
+			failed++;
+		}
+		broadcast("finished", result.getName(), (result.wasSuccessful() ? "SUCCESSFUL" : "FAILED"),
+				result.getDuration());
+	}
+
+	/*
+	 * Tells open pages the run is over, and stops the server once they've had a moment to receive it.
+	 */
+	public synchronized void stop() {
+		broadcast(DONE, null, null, 0);
+		server.stop(1);
+		handlers.shutdownNow();
+	}
+
+	/* Sends an event with the current state of the run to every open page */
+	private void broadcast(String type, String testName, String status, long duration) {
+		String event = toEvent(type, testName, status, duration);
+		for (LinkedBlockingQueue<String> client : clients) {
+			if (!client.offer(event)) {
+				clients.remove(client); // Not reading events, stop queueing for it
+			}
+		}
+	}
+
+	/* Builds a server-sent event, with the run's state as JSON */
+	private String toEvent(String type, String testName, String status, long duration) {
+		long now = System.nanoTime();
+		StringBuilder json = new StringBuilder();
+		json.append("{\"test\":").append(Json.quote(testName))
+			.append(",\"status\":").append(Json.quote(status))
+			.append(",\"duration\":").append(duration)
+			.append(",\"total\":").append(total)
+			.append(",\"started\":").append(started)
+			.append(",\"passed\":").append(passed)
+			.append(",\"failed\":").append(failed)
+			.append(",\"elapsed\":").append((now - startNanos) / 1000000)
+			.append(",\"running\":[");
+
+		boolean first = true;
+		for (String name : running.keySet()) {
+			json.append(first ? "" : ",")
+				.append("{\"name\":").append(Json.quote(name))
+				.append(",\"elapsed\":").append((now - running.get(name)) / 1000000).append("}");
+			first = false;
+		}
+		json.append("]}");
+
+		return "event: " + type + "\ndata: " + json + "\n\n";
+	}
+
+	/*
+	 * Streams events to a page until the run ends or the page is closed
+	 */
+	private void handleEvents(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		exchange.sendResponseHeaders(200, 0);
+
+		// Starts the page off with the current state
+		LinkedBlockingQueue<String> client = new LinkedBlockingQueue<String>(MAX_QUEUED_EVENTS);
+		synchronized (this) {
+			client.offer(toEvent("run", null, null, 0));
+			clients.add(client);
+		}
+
+		OutputStream out = exchange.getResponseBody();
+		try {
+			while (true) {
+				String event = client.poll(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+				if (event == null) {
+					event = ": keep-alive\n\n";
+				}
+				out.write(event.getBytes(StandardCharsets.UTF_8));
+				out.flush();
+				if (event.startsWith("event: " + DONE + "\n")) {
+					break;
+				}
+			}
+		} catch (IOException | InterruptedException e) {
+			// Page was closed, or the server is stopping
+		} finally {
+			clients.remove(client);
+			exchange.close();
+		}
+	}
+
+	/*
+	 * Serves the dashboard page
+	 */
+	private void handlePage(HttpExchange exchange) throws IOException {
+		byte[] page = PAGE.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		exchange.sendResponseHeaders(200, page.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(page);
+		out.close();
+	}
+
+	/* The dashboard page. Keeps the last 200 finished tests on screen. */
+	private final static String PAGE = String.join("\n",
+		"<!DOCTYPE html>",
+		"<html><head><meta charset=\"utf-8\"><title>SelTest run</title></head>",
+		"<body><div style=\"font-family: Consolas\">",
+		"<h1>SelTest run</h1>",
+		"<p id=\"summary\">Waiting for run...</p>",
+		"<h2>Running</h2><div id=\"running\"></div>",
+		"<h2>Finished</h2><div id=\"finished\"></div>",
+		"</div><script>",
+		"var finished = document.getElementById('finished');",
+		"var state = null, stateTime = 0;",
+		"function fmt(ms) { return (ms / 1000).toFixed(1) + 's'; }",
+		"function render() {",
+		"  if (!state) return;",
+		"  var elapsed = state.elapsed + (state.done ? 0 : Date.now() - stateTime);",
+		"  var done = state.passed + state.failed;",
+		"  var perMin = elapsed > 0 ? (done * 60000 / elapsed).toFixed(1) : '0.0';",
+		"  document.getElementById('summary').innerHTML = done + ' / ' + state.total + ' finished, '",
+		"    + '<span style=\"color: #0A0\">' + state.passed + ' passed</span>, '",
+		"    + '<span style=\"color: #F00\">' + state.failed + ' failed</span>, '",
+		"    + state.running.length + ' running, elapsed ' + fmt(elapsed) + ', ' + perMin + ' tests/min'",
+		"    + (state.done ? ' - <strong>run complete</strong>' : '');",
+		"  var html = '';",
+		"  state.running.forEach(function (t) {",
+		"    html += t.name + ' (' + fmt(t.elapsed + (state.done ? 0 : Date.now() - stateTime)) + ')<br />';",
+		"  });",
+		"  document.getElementById('running').innerHTML = html;",
+		"}",
+		"function update(e) { state = JSON.parse(e.data); stateTime = Date.now(); render(); }",
+		"var source = new EventSource('/events');",
+		"source.addEventListener('run', update);",
+		"source.addEventListener('started', update);",
+		"source.addEventListener('finished', function (e) {",
+		"  update(e);",
+		"  var line = document.createElement('div');",
+		"  line.innerHTML = state.test + ' <span style=\"color: ' + (state.status == 'SUCCESSFUL' ? '#0A0' : '#F00')",
+		"    + '\">' + state.status + '</span> ' + fmt(state.duration);",
+		"  finished.insertBefore(line, finished.firstChild);",
+		"  if (finished.childNodes.length > 200) finished.removeChild(finished.lastChild);",
+		"});",
+		"source.addEventListener('" + DONE + "', function (e) { update(e); state.done = true; render(); source.close(); });",
+		"setInterval(render, 1000);",
+		"</script></body></html>");
+}
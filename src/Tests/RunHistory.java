@@ -0,0 +1,265 @@
+package Tests;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * RunHistory
+ *
+ * Append-only store of every test run, kept in a single memory-mapped file so it can hold years of
+ * history cheaply. Each run of a test class is one fixed-size record:
+ *
+ *   offset  size  field
+ *        0     8  64-bit hash of the test name
+ *        8     8  start time, Unix timestamp in milliseconds
+ *       16     8  duration, in milliseconds
+ *       24     1  outcome, 1 if the test passed
+ *       25     1  1 if the test added a warning
+ *       26     6  unused
+ *
+ * The file starts with a 32 byte header holding a magic number, the format version, the record size,
+ * and the number of records. The count is only updated after a record is written, so a crash
+ * mid-append leaves the file consistent.
+ *
+ * Opening the file builds an in-memory index of each test's records, which makes the queries below
+ * cost O(window) regardless of how much history there is. Only one process should write to a history
+ * file at a time.
+ */
+
+public class RunHistory implements TestExecutor.RunListener {
+
+	private final static long MAGIC = 0x53454c4849535431L; // "SELHIST1"
+	private final static int VERSION = 1;                  // Format version
+	private final static int HEADER_SIZE = 32;             // Bytes before the first record
+	private final static int RECORD_SIZE = 32;             // Bytes per record
+	private final static int COUNT_OFFSET = 16;            // Position of the record count in the header
+	private final static long MIN_CAPACITY = 1024 * 1024;  // Smallest mapping, grown by doubling
+
+	private String path;                                   // Location of the history file
+	private FileChannel channel;                           // Open history file
+	private MappedByteBuffer map;                          // Mapping of the whole file
+	private int count;                                     // # of records in the file
+	private HashMap<Long, IntList> index                   // Record numbers for each test, oldest first,
+		= new HashMap<Long, IntList>();                    // hashed by the hash of the test's name
+
+	/*
+	 * Opens the history file at the given path, creating it if it doesn't exist
+	 */
+	public RunHistory(String path) throws IOException {
+		this.path = path;
+		channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		if (channel.size() == 0) {
+			mapCapacity(MIN_CAPACITY);
+			map.putLong(0, MAGIC);
+			map.putInt(8, VERSION);
+			map.putInt(12, RECORD_SIZE);
+			map.putLong(COUNT_OFFSET, 0);
+			count = 0;
+		}
+		else {
+			mapCapacity(Math.max(channel.size(), MIN_CAPACITY));
+			if (map.getLong(0) != MAGIC || map.getInt(8) != VERSION || map.getInt(12) != RECORD_SIZE) {
+				channel.close();
+				throw new IOException(path + " is not a run history file, or has an unsupported version");
+			}
+			count = Math.toIntExact(map.getLong(COUNT_OFFSET));
+		}
+
+		// Index every record by test
+		for (int i = 0; i < count; i++) {
+			getRecords(map.getLong(offset(i)), true).add(i);
+		}
+	}
+
+	/*
+	 * Appends a record for one run of a test
+	 */
+	public synchronized void record(String testName, long startTime, long duration, boolean passed, boolean warning) {
+		long needed = offset(count + 1);
+		if (needed > map.capacity()) {
+			try {
+				mapCapacity(map.capacity() * 2L);
+			} catch (IOException e) {
+				System.out.println("Could not grow run history file " + path);
+				e.printStackTrace();
+				return;
+			}
+		}
+
+		long hash = hash(testName);
+		int position = offset(count);
+		map.putLong(position, hash);
+		map.putLong(position + 8, startTime);
+		map.putLong(position + 16, duration);
+		map.put(position + 24, (byte) (passed ? 1 : 0));
+		map.put(position + 25, (byte) (warning ? 1 : 0));
+
+		// Commits the record by updating the count last
+		map.putLong(COUNT_OFFSET, count + 1);
+		getRecords(hash, true).add(count);
+		count++;
+	}
+
+	public void testStarted(String testName) {
+		// Only finished tests are recorded
+	}
+
+	/* Records a finished test */
+	public void testFinished(NamedResult result) {
+		record(result.getName(), result.getStartTime(), result.getDuration(), result.wasSuccessful(),
+				result.hadWarning());
+	}
+
+	/*
+	 * Returns up to n of the test's most recent durations in milliseconds, newest first
+	 */
+	public synchronized long[] getLastDurations(String testName, int n) {
+		IntList records = getRecords(hash(testName), false);
+		if (records == null) {
+			return new long[0];
+		}
+
+		int size = Math.min(n, records.size);
+		long[] durations = new long[size];
+		for (int i = 0; i < size; i++) {
+			durations[i] = map.getLong(offset(records.values[records.size - 1 - i]) + 16);
+		}
+		return durations;
+	}
+
+	/*
+	 * Returns a percentile (0 - 100) of the test's durations over its last window runs, in milliseconds.
+	 * Returns -1 if the test has no history.
+	 */
+	public long getDurationPercentile(String testName, double percentile, int window) {
+		long[] durations = getLastDurations(testName, window);
+		if (durations.length == 0) {
+			return -1;
+		}
+		Arrays.sort(durations);
+		int rank = (int) Math.ceil(percentile / 100.0 * durations.length) - 1;
+		return durations[Math.max(0, Math.min(rank, durations.length - 1))];
+	}
+
+	/*
+	 * Returns the fraction (0 - 1) of the test's last window runs that failed. Returns -1 if the test
+	 * has no history.
+	 */
+	public synchronized double getFailureRate(String testName, int window) {
+		IntList records = getRecords(hash(testName), false);
+		if (records == null) {
+			return -1;
+		}
+
+		int size = Math.min(window, records.size);
+		int failures = 0;
+		for (int i = 0; i < size; i++) {
+			if (map.get(offset(records.values[records.size - 1 - i]) + 24) == 0) {
+				failures++;
+			}
+		}
+		return (double) failures / size;
+	}
+
+	/* Returns the # of recorded runs of the test */
+	public synchronized int getRunCount(String testName) {
+		IntList records = getRecords(hash(testName), false);
+		return (records == null ? 0 : records.size);
+	}
+
+	/* Returns true if the test's most recent recorded run failed */
+	public synchronized boolean failedLastRun(String testName) {
+		IntList records = getRecords(hash(testName), false);
+		if (records == null) {
+			return false;
+		}
+		return map.get(offset(records.values[records.size - 1]) + 24) == 0;
+	}
+
+	/* Returns the total # of records */
+	public synchronized int size() { return count; }
+
+	/*
+	 * Returns a 64-bit FNV-1a hash of every record, in order. Together with size(), lets runs that
+	 * should share a history (such as the shards of a run) check they read the same one.
+	 */
+	public synchronized long getContentHash() {
+		long hash = 0xcbf29ce484222325L;
+		int end = offset(count);
+		for (int i = HEADER_SIZE; i < end; i++) {
+			hash ^= (map.get(i) & 0xff);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/* Returns a one line summary, for the result logs */
+	public synchronized String getStatistics() {
+		return count + " records for " + index.size() + " tests in " + path;
+	}
+
+	/*
+	 * Writes the mapping out to disk and closes the file
+	 */
+	public synchronized void close() throws IOException {
+		map.force();
+		channel.close();
+	}
+
+	/* Maps the file with the given capacity, growing the file if needed */
+	private void mapCapacity(long capacity) throws IOException {
+		if (capacity > Integer.MAX_VALUE) {
+			throw new IOException("Run history file " + path + " is full");
+		}
+		map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+
+	/* Returns the list of records for a test hash, optionally creating it */
+	private IntList getRecords(long hash, boolean create) {
+		IntList records = index.get(hash);
+		if (records == null && create) {
+			records = new IntList();
+			index.put(hash, records);
+		}
+		return records;
+	}
+
+	/* Position of a record in the file */
+	private static int offset(int record) {
+		return HEADER_SIZE + record * RECORD_SIZE;
+	}
+
+	/*
+	 * 64-bit FNV-1a hash of a test name. Stored instead of the name so every record is the same size.
+	 */
+	public static long hash(String testName) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < testName.length(); i++) {
+			hash ^= testName.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/*
+	 * Growable list of ints, to keep the index small
+	 */
+	private static class IntList {
+		int[] values = new int[4];
+		int size = 0;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+}
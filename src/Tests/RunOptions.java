@@ -0,0 +1,237 @@
+package Tests;
+
+import java.util.ArrayList;
+
+/*
+ * RunOptions
+ *
+ * Holds the settings for a single run of the test runner. Settings can be given as command line
+ * arguments (--name=value or --name value), or as system properties (-Dseltest.name=value). Command
+ * line arguments take priority over system properties.
+ */
+
+public class RunOptions {
+
+	private final static String PROPERTY_PREFIX = "seltest."; // Prefix for system properties
+
+	private int threads = 1;            // Number of test classes to run at the same time. 1 runs tests sequentially.
+	private boolean driverPool = false; // If true, tests lease drivers from DriverPool instead of launching their own
+	private int driverMaxUses = 20;     // Number of tests a pooled driver is used for before being replaced
+	private boolean prelaunch = false;  // If true, drivers for upcoming tests are launched in the background
+	private int dashboardPort = -1;     // Port for the live dashboard on localhost. -1 turns it off.
+	private String historyPath = null;  // Run history file, shared between runs. null turns it off.
+	private TestScheduler.Policy schedule // Order to run tests in, see TestScheduler
+		= TestScheduler.Policy.LIST;
+	private int shardIndex = 1;         // Shard of the tests to run on this machine, from 1 to shardCount
+	private int shardCount = 1;         // # of shards the tests are split into. 1 runs every test.
+	private int maxAttempts = 1;        // Most times a failed test is run, including the first. 1 turns retries off.
+	private int retryBudget = 10;       // Most retries for the whole run
+	private String[] retryOn            // Exception types worth retrying, see RetryPolicy
+		= RetryPolicy.DEFAULT_RETRY_ON;
+	private String rerunDirectory;      // Previous run's TestLogs directory, to only rerun its failed tests. null runs every test.
+	private DriverProfile driverProfile // Settings Chrome is launched with, unless a test class chooses its own
+		= DriverProfile.FAITHFUL;
+	private boolean testIndex = false;  // If true, runs the tests in TestIndex instead of the ones added by hand
+	private String[] tags;              // Only runs tests with any of these tags. null runs every test.
+	private String[] packages;          // Only runs tests in any of these packages. null runs every test.
+
+	private final static int DEFAULT_DASHBOARD_PORT = 8765; // Used when --dashboard is given without a port
+	private final static String DEFAULT_HISTORY_FILE        // Used when --history is given without a path
+		= "TestHistory.bin";
+
+	/* Constructor, reads settings from system properties only */
+	public RunOptions() {
+		this(new String[0]);
+	}
+
+	/*
+	 * Constructor, reads settings from the given arguments, then from system properties. Throws
+	 * IllegalArgumentException for settings that can't safely fall back to a default, like --shard or a
+	 * bare --rerun-failed.
+	 */
+	public RunOptions(String[] args) {
+		threads = parseInt("threads", getOption(args, "threads"), threads);
+		if (threads < 1) {
+			threads = 1;
+		}
+		driverPool = parseBoolean(getOption(args, "driver-pool"), driverPool);
+		driverMaxUses = parseInt("driver-max-uses", getOption(args, "driver-max-uses"), driverMaxUses);
+		prelaunch = parseBoolean(getOption(args, "prelaunch"), prelaunch);
+
+		String profileLabel = getOption(args, "driver-profile");
+		if (profileLabel != null) {
+			DriverProfile profile = DriverProfile.forLabel(profileLabel);
+			if (profile == null) {
+				System.out.println("Invalid value for driver-profile: " + profileLabel + ", using " + driverProfile.getLabel());
+			}
+			else {
+				driverProfile = profile;
+			}
+		}
+
+		// Run history is off unless asked for, as it writes a file that grows every run. --history on
+		// its own uses TestHistory.bin in the working directory.
+		String history = getOption(args, "history");
+		if ("true".equals(history)) {
+			historyPath = System.getProperty("user.dir") + "/" + DEFAULT_HISTORY_FILE;
+		}
+		else if (history != null && !"false".equals(history)) {
+			historyPath = history;
+		}
+
+		String scheduleLabel = getOption(args, "schedule");
+		if (scheduleLabel != null) {
+			TestScheduler.Policy policy = TestScheduler.Policy.forLabel(scheduleLabel);
+			if (policy == null) {
+				System.out.println("Invalid value for schedule: " + scheduleLabel + ", using " + schedule.getLabel());
+			}
+			else {
+				schedule = policy;
+			}
+		}
+
+		String shard = getOption(args, "shard");
+		if (shard != null) {
+			parseShard(shard);
+		}
+
+		maxAttempts = parseInt("max-attempts", getOption(args, "max-attempts"), maxAttempts);
+		retryBudget = parseInt("retry-budget", getOption(args, "retry-budget"), retryBudget);
+		String retryTypes = getOption(args, "retry-on");
+		if (retryTypes != null) {
+			retryOn = retryTypes.split(",");
+		}
+
+		testIndex = parseBoolean(getOption(args, "index"), testIndex);
+		tags = parseList(getOption(args, "tags"));
+		packages = parseList(getOption(args, "package"));
+
+		String rerun = getOption(args, "rerun-failed");
+		if (rerun != null && !"false".equals(rerun)) {
+			if ("true".equals(rerun)) {
+				throw new IllegalArgumentException("--rerun-failed needs the previous run's TestLogs directory, "
+						+ "such as --rerun-failed TestLogs_2020-08-17");
+			}
+			rerunDirectory = rerun;
+		}
+
+		String dashboard = getOption(args, "dashboard");
+		if ("true".equals(dashboard)) {
+			dashboardPort = DEFAULT_DASHBOARD_PORT;
+		}
+		else if (dashboard != null && !"false".equals(dashboard)) {
+			dashboardPort = parseInt("dashboard", dashboard, DEFAULT_DASHBOARD_PORT);
+		}
+	}
+
+	/* Getters */
+	public int getThreads() { return threads; }
+	public boolean useDriverPool() { return driverPool; }
+	public int getDriverMaxUses() { return driverMaxUses; }
+	public boolean usePrelaunch() { return prelaunch; }
+	public DriverProfile getDriverProfile() { return driverProfile; }
+	public boolean useDashboard() { return dashboardPort >= 0; }
+	public int getDashboardPort() { return dashboardPort; }
+	public boolean useHistory() { return historyPath != null; }
+	public String getHistoryPath() { return historyPath; }
+	public TestScheduler.Policy getSchedule() { return schedule; }
+	public boolean isSharded() { return shardCount > 1; }
+	public int getShardIndex() { return shardIndex; }
+	public int getShardCount() { return shardCount; }
+	public int getMaxAttempts() { return maxAttempts; }
+	public int getRetryBudget() { return retryBudget; }
+	public String[] getRetryOn() { return retryOn; }
+	public boolean rerunFailed() { return rerunDirectory != null; }
+	public String getRerunDirectory() { return rerunDirectory; }
+	public boolean hasTestFilter() { return tags != null || packages != null; }
+	public boolean useTestIndex() { return testIndex || hasTestFilter(); }
+	public String[] getTags() { return tags; }
+	public String[] getPackages() { return packages; }
+
+	/* Creates the retry policy for this run */
+	public RetryPolicy createRetryPolicy() {
+		if (maxAttempts <= 1) {
+			return RetryPolicy.NONE;
+		}
+		return new RetryPolicy(maxAttempts, retryBudget, retryOn);
+	}
+
+	/*
+	 * Finds the value for an option, checking the arguments first and system properties second.
+	 * Returns null if the option was not given.
+	 */
+	private static String getOption(String[] args, String name) {
+		String flag = "--" + name;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].startsWith(flag + "=")) {
+				return args[i].substring(flag.length() + 1);
+			}
+			if (args[i].equals(flag)) {
+				// Flag without a value is treated as "true"
+				if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+					return args[i + 1];
+				}
+				return "true";
+			}
+		}
+		return System.getProperty(PROPERTY_PREFIX + name);
+	}
+
+	/* Parses an int option, falling back to the default and warning on bad input */
+	private static int parseInt(String name, String value, int defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			System.out.println("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/*
+	 * Parses a shard given as i/N, such as 2/4. Throws IllegalArgumentException on bad input, rather
+	 * than running every test, as every machine in a sharded run would then run the whole suite.
+	 */
+	private void parseShard(String value) {
+		String[] parts = value.trim().split("/");
+		if (parts.length == 2) {
+			try {
+				int index = Integer.parseInt(parts[0].trim());
+				int count = Integer.parseInt(parts[1].trim());
+				if (count >= 1 && index >= 1 && index <= count) {
+					shardIndex = index;
+					shardCount = count;
+					return;
+				}
+			} catch (NumberFormatException e) {
+				// Reported below
+			}
+		}
+		throw new IllegalArgumentException("Invalid value for shard: " + value
+				+ ", expected i/N with 1 <= i <= N, such as --shard 2/4");
+	}
+
+	/* Parses a comma separated list, such as smoke,login. Returns null if not given or empty. */
+	private static String[] parseList(String value) {
+		if (value == null || "true".equals(value)) {
+			return null;
+		}
+		ArrayList<String> items = new ArrayList<String>();
+		for (String item : value.split(",")) {
+			if (!item.trim().isEmpty()) {
+				items.add(item.trim());
+			}
+		}
+		return (items.isEmpty() ? null : items.toArray(new String[0]));
+	}
+
+	/* Parses a boolean option, falling back to the default if not given */
+	private static boolean parseBoolean(String value, boolean defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value.trim());
+	}
+}
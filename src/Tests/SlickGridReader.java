@@ -0,0 +1,228 @@
+package Tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.openqa.selenium.JavascriptExecutor;
+
+/*
+ * SlickGridReader
+ *
+ * Reads rows from a SlickGrid in chunks, with one executeScript call per chunk instead of one per row,
+ * so checking a 5,000 row grid takes 10 round trips to the browser instead of 5,000. Rows come back as
+ * JSON and are read into GridRows, which have typed getters for each column.
+ *
+ *   for (SlickGridReader.GridRow row : getSlickGrid("listSearchGrid")) {
+ *       if (row.getLong("id") == ...) ...
+ *   }
+ *
+ * Iterating only keeps one chunk in memory at a time. Each chunk is read when the previous one runs
+ * out, and reading stops once a chunk reaches the end of the grid.
+ *
+ * Column values that are objects or arrays are returned as their JSON text. Functions are left out.
+ */
+
+public class SlickGridReader implements Iterable<SlickGridReader.GridRow> {
+
+	public final static String DEFAULT_GRID_NAME = "grid"; // Variable most pages keep their grid in
+	public final static int DEFAULT_CHUNK_SIZE = 500;      // Rows read per round trip
+
+	private final static Pattern GRID_NAME               // A variable or property path, such as page.grids.main
+		= Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*(\\.[A-Za-z_$][A-Za-z0-9_$]*)*");
+
+	private PageHelpers helpers;                          // Runs the reads in the browser
+	private String gridName;                              // Variable the grid is in
+	private int chunkSize = DEFAULT_CHUNK_SIZE;           // Rows read per round trip
+	private List<String> columns = null;                  // Columns to read, null for every column
+
+	/* Constructor, for the grid in the variable named grid */
+	public SlickGridReader(JavascriptExecutor js) {
+		this(js, DEFAULT_GRID_NAME);
+	}
+
+	/* Constructor, for the grid in the named variable, such as listSearchGrid */
+	public SlickGridReader(JavascriptExecutor js, String gridName) {
+		if (gridName == null || !GRID_NAME.matcher(gridName).matches()) {
+			throw new IllegalArgumentException("Invalid SlickGrid variable name: " + gridName);
+		}
+		this.helpers = new PageHelpers(js);
+		this.gridName = gridName;
+	}
+
+	/* Sets the # of rows read per round trip */
+	public SlickGridReader setChunkSize(int chunkSize) {
+		this.chunkSize = (chunkSize < 1 ? 1 : chunkSize);
+		return this;
+	}
+
+	/* Only reads the given columns, which makes each chunk smaller. Reads every column if none are given. */
+	public SlickGridReader setColumns(String... columns) {
+		this.columns = (columns.length == 0 ? null : Arrays.asList(columns));
+		return this;
+	}
+
+	/* Returns the # of rows in the grid */
+	public int getRowCount() {
+		return read(0, 0).total;
+	}
+
+	/*
+	 * Reads rows from index from up to (not including) index to, in chunks. Stops early at the end of the
+	 * grid.
+	 */
+	public List<GridRow> readRange(int from, int to) {
+		ArrayList<GridRow> rows = new ArrayList<GridRow>();
+		int next = from;
+		while (next < to) {
+			Chunk chunk = read(next, Math.min(to, next + chunkSize));
+			rows.addAll(chunk.rows);
+			next += chunk.rows.size();
+			if (chunk.rows.isEmpty() || next >= chunk.total) {
+				break;
+			}
+		}
+		return rows;
+	}
+
+	/* Reads every row in the grid */
+	public List<GridRow> readAll() {
+		return readRange(0, Integer.MAX_VALUE);
+	}
+
+	/* Returns an iterator over every row in the grid, reading one chunk at a time */
+	@Override
+	public Iterator<GridRow> iterator() {
+		return new Iterator<GridRow>() {
+			private List<GridRow> chunk = Collections.emptyList(); // Rows read but not returned yet
+			private int position = 0;                              // Next row to return from chunk
+			private int next = 0;                                  // Index of the next row to read
+			private boolean done = false;                          // If true, the end of the grid was reached
+
+			public boolean hasNext() {
+				if (position < chunk.size()) {
+					return true;
+				}
+				if (done) {
+					return false;
+				}
+				Chunk read = read(next, next + chunkSize);
+				chunk = read.rows;
+				position = 0;
+				next += chunk.size();
+				done = (chunk.isEmpty() || next >= read.total);
+				return !chunk.isEmpty();
+			}
+
+			public GridRow next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return chunk.get(position++);
+			}
+		};
+	}
+
+	/* Returns the # of round trips made so far, including installing the page's helper library */
+	public long getRoundTrips() {
+		return helpers.getRoundTrips();
+	}
+
+	/* Reads one chunk of rows in a single round trip */
+	private Chunk read(int from, int to) {
+		Object returned = helpers.call("gridRows", gridName, from, to, columns);
+		if (!(returned instanceof List) || ((List<?>) returned).size() != 2) {
+			throw new IllegalStateException("Unexpected result reading SlickGrid rows: " + returned);
+		}
+		List<?> result = (List<?>) returned;
+		int total = ((Number) result.get(0)).intValue();
+		ArrayList<HashMap<String, String>> values = Json.parseObjectArray((String) result.get(1));
+		ArrayList<GridRow> rows = new ArrayList<GridRow>(values.size());
+		for (int i = 0; i < values.size(); i++) {
+			rows.add(new GridRow(from + i, values.get(i)));
+		}
+		return new Chunk(total, rows);
+	}
+
+	/*
+	 * One chunk of rows, and the grid's length when it was read
+	 */
+	private static class Chunk {
+		int total;               // # of rows in the grid
+		List<GridRow> rows;      // Rows read
+
+		Chunk(int total, List<GridRow> rows) {
+			this.total = total;
+			this.rows = rows;
+		}
+	}
+
+	/*
+	 * One row of the grid. Values are kept as text, and converted by the getters.
+	 */
+	public static class GridRow {
+		private int index;                      // Row's index in the grid
+		private HashMap<String, String> values; // Value for each column, null if the grid had no item here
+
+		/* Constructor */
+		public GridRow(int index, HashMap<String, String> values) {
+			this.index = index;
+			this.values = values;
+		}
+
+		/* Returns true if the row has a value (even null) for the column */
+		public boolean has(String column) {
+			return values != null && values.containsKey(column);
+		}
+
+		/* Returns the column's value as text, or null if it is null or missing */
+		public String getString(String column) {
+			return (values == null ? null : values.get(column));
+		}
+
+		/* Returns the column's value as a whole number. Throws NumberFormatException if it isn't one. */
+		public long getLong(String column) {
+			return Long.parseLong(require(column));
+		}
+
+		/* Returns the column's value as a number. Throws NumberFormatException if it isn't one. */
+		public double getDouble(String column) {
+			return Double.parseDouble(require(column));
+		}
+
+		/* Returns true if the column's value is true */
+		public boolean getBoolean(String column) {
+			return "true".equals(getString(column));
+		}
+
+		/* Returns true if the grid had no item at this row */
+		public boolean isEmpty() {
+			return values == null;
+		}
+
+		/* Getters */
+		public int getIndex() { return index; }
+		public Set<String> getColumns() { return (values == null ? Collections.<String>emptySet() : values.keySet()); }
+
+		/* Returns the row as text, such as 12: {id=5, name=Smith} */
+		@Override
+		public String toString() {
+			return index + ": " + values;
+		}
+
+		/* Gets a column's value, throwing NumberFormatException if it is null or missing */
+		private String require(String column) {
+			String value = getString(column);
+			if (value == null) {
+				throw new NumberFormatException("No value for " + column + " in row " + index);
+			}
+			return value;
+		}
+	}
+}
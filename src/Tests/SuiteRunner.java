@@ -7,8 +7,6 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 
-import org.junit.runner.JUnitCore;
-
 /*
  * Helper class for the Suites. Runs and writes results to a result log specific to that suite.
  */
@@ -16,7 +14,6 @@ import org.junit.runner.JUnitCore;
 @SuppressWarnings("rawtypes")
 public abstract class SuiteRunner {
 
-	private final static int PREFIX_LENGTH = 12;
 	private final static String FILE_EXTENSION = ".html";
 
 	/*
@@ -29,48 +26,124 @@ public abstract class SuiteRunner {
 		}
 	}
 
+	/*
+	 * Runs the suite, with settings read from system properties
+	 */
 	public static void run(Class[] classes, String suiteName) throws IOException {
+		run(classes, suiteName, new String[0]);
+	}
+
+	/*
+	 * Runs the suite, with settings read from the given arguments and system properties
+	 */
+	public static void run(Class[] classes, String suiteName, String[] args) throws IOException {
 		System.out.println("Current suite: " + suiteName);
+		RunOptions options = new RunOptions(args);
+		RunContext context = new RunContext();
 
 		// Init tests amd HashMap
 		HashMap<Class, NamedResult> results = new HashMap<Class, NamedResult>();
 		ArrayList<Class> tests = new ArrayList<Class>();
 		for (Class curr : classes) {
-			tests.add(curr);
+			if (TestIndex.matches(curr, options.getTags(), options.getPackages())) {
+				tests.add(curr);
+			}
+		}
+
+		// Only rerun the tests that failed in a previous run, if selected
+		ResultsLogMerger previousRun = null;
+		if (options.rerunFailed()) {
+			previousRun = new ResultsLogMerger();
+			previousRun.addDirectory(options.getRerunDirectory());
+			previousRun.retainFailed(tests);
+		}
+
+		// Keep only this machine's share of the tests, if the run is split across machines
+		RunHistory history = (options.useHistory() ? new RunHistory(options.getHistoryPath()) : null);
+		TestSharder sharder = null;
+		if (options.isSharded()) {
+			sharder = new TestSharder(options.getShardIndex(), options.getShardCount(), history);
+			tests.retainAll(sharder.select(tests));
+			System.out.println(sharder.getSummary());
 		}
 
-		// Make directory if none exists
-		Path myPath = Paths.get(System.getProperty("user.dir") + "/TestLogs" + MyTotalTime.get());
+		// Make directory if none exists. Each shard gets its own.
+		Path myPath = Paths.get(context.getLogRoot());
+		if (sharder != null) {
+			myPath = myPath.resolve(sharder.getDirectoryName());
+		}
+		context.setLogRoot(myPath.toString());
+		context.setDriverProfile(options.getDriverProfile());
 		File directory = new File(myPath.toString());
 		if (!directory.exists()) {
 			directory.mkdirs();
 		}
+		if (sharder != null) {
+			sharder.writeManifest(myPath.toString() + "/ShardManifest" + suiteName + ".json");
+		}
 
 		// Create space buffer
 		int spaceBuffer = 0;
 		for (Class test : tests) {
-			String testName = test.toString().substring(PREFIX_LENGTH);
+			String testName = TestExecutor.getTestName(test);
 			if (testName.length() > spaceBuffer) {
 				spaceBuffer = testName.length();
 			}
 		}
 		spaceBuffer += 3;
 
-		// Init time start for tests
-		MyTotalTime.initStartEpoch();
+		// Turn on driver reuse between tests, if selected
+		DriverPool.configure(options.useDriverPool(), options.getDriverMaxUses());
 
 		// Run and print test results to console
-		for (Class test : tests) {
-			// Gets tests name
-			String testName = test.toString().substring(PREFIX_LENGTH);
-			System.out.println("Starting test " + testName);
-
-			// Runs tests and stores result as a NamedResult
-			results.put(test, new NamedResult(testName, JUnitCore.runClasses(test)));
+		TestExecutor executor = new TestExecutor(options.getThreads());
+		executor.setRunContext(context);
+		executor.setRetryPolicy(options.createRetryPolicy());
+		JsonLinesSink jsonResults = new JsonLinesSink(myPath.toString() + "/Results" + suiteName + ".jsonl", FILE_EXTENSION);
+		JUnitXmlSink xmlResults = new JUnitXmlSink(myPath.toString() + "/Results" + suiteName + ".xml");
+		executor.addListener(jsonResults);
+		executor.addListener(xmlResults);
+		if (history != null && sharder == null) {
+			executor.addListener(history);
+		}
+		TestScheduler scheduler = new TestScheduler(options.getSchedule(), history);
+		ArrayList<Class> schedule = scheduler.order(tests);
+		System.out.println(scheduler.getSummary(tests.size()));
+		if (options.usePrelaunch()) {
+			DriverPrelauncher prelauncher = new DriverPrelauncher(schedule, options.getDriverProfile(),
+					options.getThreads(), context.getLogRoot());
+			context.setPrelauncher(prelauncher);
+			prelauncher.start();
+		}
+		RunDashboard dashboard = null;
+		if (options.useDashboard()) {
+			dashboard = new RunDashboard(options.getDashboardPort());
+			dashboard.start(tests.size());
+			executor.addListener(dashboard);
 		}
+		try {
+			executor.run(schedule, (test, result) -> results.put(test, result));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while running suite " + suiteName, e);
+		} finally {
+			jsonResults.close();
+			xmlResults.close();
+			if (history != null) {
+				history.close();
+			}
+			if (context.getPrelauncher() != null) {
+				context.getPrelauncher().shutdown();
+			}
+			DriverPool.shutdown();
+			if (dashboard != null) {
+				dashboard.stop();
+			}
+		}
+		System.out.println("Run summary: " + executor.getSpeedupSummary());
 
 		// Init end time
-		MyTotalTime.initEndEpoch();
+		context.finish();
 
 		// Print test results summary to console
 		for (Class test : tests) {
@@ -88,14 +161,23 @@ public abstract class SuiteRunner {
 		}
 
 		// Write result log with passed and failed tests
+		ResultsLogModel model = new ResultsLogModel(tests, results);
+		model.setTimeTaken(context.getTimeLength());
+		TestExecutor.addRunStatistics(model, executor, history, context);
 		ResultsLogWriter resultLog = new ResultsLogWriter(myPath.toString(), 
 				"ResultsLog" + suiteName, FILE_EXTENSION, false);
-		resultLog.writeResults(tests, results);
+		resultLog.writeResults(model);
+
+		// Write result logs with the new results in place of the previous run's, if rerunning failed tests
+		if (previousRun != null) {
+			previousRun.overlay(tests, results);
+			previousRun.write(myPath.toString(), "ResultsLogCombined" + suiteName);
+		}
 
 		// Print some summary information to console
 		System.out.println("Done");
 		System.out.println("\nExiting program");
 		System.out.println("Working directory was: " + System.getProperty("user.dir"));
-		System.out.println("Time taken was: " + MyTotalTime.getTimeLength());
+		System.out.println("Time taken was: " + context.getTimeLength());
 	}
 }
@@ -22,6 +22,6 @@ public class Template_MyTest_Suite {
 		String[] arr = MethodHandles.lookup().lookupClass().getName().split("\\.");
 		String name = arr[arr.length - 1]; 
 		name = name.substring(0, name.length() - 6);
-		SuiteRunner.run(getClasses(), name);
+		SuiteRunner.run(getClasses(), name, args);
 	}
 }
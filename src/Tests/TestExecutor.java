@@ -0,0 +1,343 @@
+package Tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.runner.JUnitCore;
+
+/*
+ * TestExecutor
+ *
+ * Runs test classes on a pool of worker threads. Results are collected as NamedResults, and are
+ * handed back to the caller in the same order as the list of tests, regardless of the order the
+ * tests actually finish in. This keeps anything written from the handler (like ResultsLogFull)
+ * ordered and consistent between sequential and parallel runs.
+ *
+ * With 1 thread, tests are run one at a time on the calling thread, same as before.
+ *
+ * Failed tests can be run again at the end of the run, as decided by a RetryPolicy. Listeners are only
+ * told about a test once its last attempt has finished, and each earlier attempt is kept on the final
+ * NamedResult, along with its test log.
+ */
+
+@SuppressWarnings("rawtypes")
+public class TestExecutor {
+
+	private final static int PREFIX_LENGTH = 12; // Length of the prefix for test names
+
+	/*
+	 * Called on the calling thread for each test once it has finished, in test list order.
+	 */
+	public interface ResultHandler {
+		public void handle(Class test, NamedResult result) throws IOException;
+	}
+
+	/*
+	 * Called on the worker thread running the test, as soon as a test starts or finishes. Unlike
+	 * ResultHandler, calls are not in test list order, and can come from several threads at once.
+	 */
+	public interface RunListener {
+		public void testStarted(String testName);
+		public void testFinished(NamedResult result);
+	}
+
+	private int threads;                                 // Number of worker threads
+	private ConcurrentHashMap<Class, NamedResult> results // Results for finished tests, hashed by class
+		= new ConcurrentHashMap<Class, NamedResult>();
+	private AtomicLong busyNanos = new AtomicLong();     // Sum of the time taken by each test
+	private CopyOnWriteArrayList<RunListener> listeners  // Told about tests as they start and finish
+		= new CopyOnWriteArrayList<RunListener>();
+	private long wallNanos = 0;                          // Time taken by the last call to run()
+	private RunContext context = RunContext.current();   // Run the tests belong to, bound to each worker thread
+	private RetryPolicy retryPolicy = RetryPolicy.NONE;  // Decides which failed tests are run again
+
+	/* Constructor */
+	public TestExecutor(int threads) {
+		this.threads = (threads < 1 ? 1 : threads);
+	}
+
+	/* Sets the run the tests belong to, which gives them their log directory */
+	public void setRunContext(RunContext context) {
+		this.context = context;
+	}
+
+	/* Sets the policy for running failed tests again at the end of the run */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/* Adds a listener to be told about each test as it starts and finishes */
+	public void addListener(RunListener listener) {
+		listeners.add(listener);
+	}
+
+	/*
+	 * Runs every test in the list, calling the handler for each test in list order. Tests that fail
+	 * and can be retried are run again at the end of the run, and handed to the handler afterwards.
+	 */
+	public void run(ArrayList<Class> tests, ResultHandler handler) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		NamedResult[] latest = new NamedResult[tests.size()];  // Latest attempt of each test
+		ArrayList<Integer> retries = new ArrayList<Integer>(); // Tests waiting to be retried, in list order
+
+		ExecutorService pool = (threads == 1 ? null
+				: Executors.newFixedThreadPool(threads, new WorkerThreadFactory()));
+		try {
+			if (pool == null) {
+				for (int i = 0; i < tests.size(); i++) {
+					latest[i] = runFirstAttempt(tests.get(i));
+					if (retryPolicy.shouldRetry(latest[i])) {
+						retries.add(i);
+					}
+					else {
+						handler.handle(tests.get(i), latest[i]);
+					}
+				}
+			}
+			else {
+				ArrayList<Future<NamedResult>> futures = new ArrayList<Future<NamedResult>>();
+				for (Class test : tests) {
+					futures.add(pool.submit(() -> runFirstAttempt(test)));
+				}
+
+				// Waits on each test in order, so the handler sees the same order as a sequential run
+				for (int i = 0; i < tests.size(); i++) {
+					latest[i] = futures.get(i).get();
+					if (retryPolicy.shouldRetry(latest[i])) {
+						retries.add(i);
+					}
+					else {
+						handler.handle(tests.get(i), latest[i]);
+					}
+				}
+			}
+
+			// Retries failed tests until they pass, run out of attempts, or the budget runs out
+			ArrayList<Integer> pending = retries;
+			while (!pending.isEmpty()) {
+				ArrayList<Integer> retried = new ArrayList<Integer>();
+				ArrayList<Future<NamedResult>> futures = new ArrayList<Future<NamedResult>>();
+				for (int i : pending) {
+					Class test = tests.get(i);
+					NamedResult previous = latest[i];
+					if (retryPolicy.shouldRetry(previous) && retryPolicy.takeRetry()) {
+						keepAttemptLog(previous);
+						System.out.println("Retrying test " + previous.getName() + ", attempt " + (previous.getAttempt() + 1));
+						futures.add(submit(pool, () -> runAttempt(test, previous)));
+						retried.add(i);
+					}
+					else {
+						finish(test, previous);
+					}
+				}
+				for (int j = 0; j < retried.size(); j++) {
+					latest[retried.get(j)] = futures.get(j).get();
+				}
+				pending = retried;
+			}
+			for (int i : retries) {
+				handler.handle(tests.get(i), latest[i]);
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Test runner failed on a worker thread", e.getCause());
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+		}
+
+		wallNanos = System.nanoTime() - start;
+	}
+
+	/*
+	 * Runs the first attempt of a test. Unless it will be retried, its result is stored and listeners
+	 * are told straight away.
+	 */
+	private NamedResult runFirstAttempt(Class test) {
+		NamedResult result = runAttempt(test, null);
+		if (!retryPolicy.shouldRetry(result)) {
+			finish(test, result);
+		}
+		return result;
+	}
+
+	/*
+	 * Runs a single test class, and returns its result. previous is the last attempt if this is a
+	 * retry, and null otherwise.
+	 */
+	private NamedResult runAttempt(Class test, NamedResult previous) {
+		String testName = getTestName(test);
+		if (previous == null) {
+			System.out.println("Starting test " + testName);
+			for (RunListener listener : listeners) {
+				listener.testStarted(testName);
+			}
+		}
+
+		long startTime = System.currentTimeMillis();
+		long start = System.nanoTime();
+		RunContext.bind(context);
+		TestRecord record = TestRecord.begin(testName);
+		NamedResult result;
+		try {
+			result = new NamedResult(testName, JUnitCore.runClasses(test));
+		} finally {
+			TestRecord.end();
+			RunContext.unbind();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		result.setDuration(elapsed / 1000000);
+		result.setStartTime(startTime);
+		result.setRecord(record);
+		result.setAttempt(previous == null ? 1 : previous.getAttempt() + 1);
+		if (previous != null) {
+			result.setPreviousAttempt(previous);
+		}
+		busyNanos.addAndGet(elapsed);
+		return result;
+	}
+
+	/* Stores a test's final result, and tells the listeners */
+	private void finish(Class test, NamedResult result) {
+		results.put(test, result);
+		for (RunListener listener : listeners) {
+			listener.testFinished(result);
+		}
+	}
+
+	/* Runs the task on the pool, or straight away on this thread if there is no pool */
+	private static Future<NamedResult> submit(ExecutorService pool, Callable<NamedResult> task) {
+		if (pool == null) {
+			FutureTask<NamedResult> future = new FutureTask<NamedResult>(task);
+			future.run();
+			return future;
+		}
+		return pool.submit(task);
+	}
+
+	/*
+	 * Renames the test log of an attempt that is about to be retried, so the retry doesn't overwrite it.
+	 * The latest attempt's log keeps the usual name.
+	 */
+	private static void keepAttemptLog(NamedResult attempt) {
+		TestRecord record = attempt.getRecord();
+		if (record == null || record.getLogFile() == null) {
+			return;
+		}
+		String logFile = record.getLogFile();
+		int dot = logFile.lastIndexOf('.');
+		String attemptFile = logFile.substring(0, dot) + getAttemptSuffix(attempt.getAttempt()) + logFile.substring(dot);
+		try {
+			Files.move(Paths.get(logFile), Paths.get(attemptFile), StandardCopyOption.REPLACE_EXISTING);
+			record.setLogFile(attemptFile);
+		} catch (IOException e) {
+			System.out.println("Could not keep test log " + logFile + " for retry");
+			e.printStackTrace();
+		}
+	}
+
+	/* Gets the suffix added to the test log name of a retried attempt, before the file extension */
+	public static String getAttemptSuffix(int attempt) {
+		return "_attempt" + attempt;
+	}
+
+	/* Gets the name of a test, as used in the result logs */
+	public static String getTestName(Class test) {
+		return test.toString().substring(PREFIX_LENGTH);
+	}
+
+	/*
+	 * Adds the statistics for a run as a whole to its result logs: driver reuse, log output, command
+	 * latency, test phases, retries and run history. Used by both SelTest and SuiteRunner. history may
+	 * be null.
+	 */
+	public static void addRunStatistics(ResultsLogModel model, TestExecutor executor, RunHistory history,
+			RunContext context) {
+		if (DriverPool.isEnabled()) {
+			model.addStatistic("Driver pool", DriverPool.getStatistics());
+		}
+		if (context.getPrelauncher() != null) {
+			model.addStatistic("Driver pre-launch", context.getPrelauncher().getStatistics());
+		}
+		model.addStatistic("Log output", LogOutputService.get().getStatistics());
+		CommandLatency commandLatency = CommandLatency.total(executor.getResults().values());
+		if (!commandLatency.isEmpty()) {
+			model.addStatistic("WebDriver command latency", commandLatency.getReport());
+		}
+		PhaseTimer phases = PhaseTimer.total(executor.getResults().values());
+		if (!phases.isEmpty()) {
+			model.addStatistic("Test phases", phases.getReport());
+		}
+		if (executor.getRetryPolicy().isEnabled()) {
+			model.addStatistic("Retries", executor.getRetryPolicy().getStatistics() + ", "
+					+ executor.getFlakyCount() + " flaky tests");
+		}
+		if (history != null) {
+			model.addStatistic("Run history", history.getStatistics());
+		}
+	}
+
+	/* Getters */
+	public int getThreads() { return threads; }
+	public Map<Class, NamedResult> getResults() { return results; }
+	public RetryPolicy getRetryPolicy() { return retryPolicy; }
+	public long getWallTime() { return wallNanos / 1000000; }       // In milliseconds
+	public long getSequentialTime() { return busyNanos.get() / 1000000; } // In milliseconds
+
+	/* Returns the # of tests that failed at first, but passed on a retry */
+	public int getFlakyCount() {
+		int flaky = 0;
+		for (NamedResult result : results.values()) {
+			flaky += (result.isFlaky() ? 1 : 0);
+		}
+		return flaky;
+	}
+
+	/*
+	 * Returns how many times faster the run was than running the same tests one at a time, using
+	 * the sum of the time taken by each test as the sequential time.
+	 */
+	public double getSpeedup() {
+		if (wallNanos == 0) {
+			return 1.0;
+		}
+		return (double) busyNanos.get() / wallNanos;
+	}
+
+	/* Returns a one line summary of the speedup, for the console and result logs */
+	public String getSpeedupSummary() {
+		return threads + " worker thread(s), "
+			 + "time taken " + PhaseTimer.formatMillis(getWallTime()) + ", "
+			 + "sequential time " + PhaseTimer.formatMillis(getSequentialTime()) + ", "
+			 + "speedup " + String.format("%.2f", getSpeedup()) + "x";
+	}
+
+	/*
+	 * Names worker threads, and makes them daemons so a stuck test can't keep the JVM alive
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+		private AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "SelTest-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package Tests;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * TestIndex
+ *
+ * List of every test class, written by TestIndexProcessor when the tests are compiled, with each test's
+ * category (package), tags and description. Reading it is a single small file read, so the runner can
+ * pick tests by tag or package without scanning the classpath, and only loads the classes it picked.
+ *
+ * If the tests were compiled without the processor there is no index, and load() returns null.
+ */
+
+@SuppressWarnings("rawtypes")
+public class TestIndex {
+
+	public final static String RESOURCE = "TestIndex.tsv"; // Index file, next to this class on the classpath
+
+	private ArrayList<Entry> entries = new ArrayList<Entry>(); // Every test in the index, sorted by class name
+
+	/*
+	 * Reads the index from the classpath. Returns null if there isn't one.
+	 */
+	public static TestIndex load() throws IOException {
+		InputStream in = TestIndex.class.getResourceAsStream(RESOURCE);
+		if (in == null) {
+			return null;
+		}
+
+		TestIndex index = new TestIndex();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\t", -1);
+				if (fields.length < 4) {
+					System.out.println("Skipping bad line in test index: " + line);
+					continue;
+				}
+				// The description, in fields[3], is for people reading the index, the runner doesn't need it
+				String[] tags = (fields[2].isEmpty() ? new String[0] : fields[2].split(","));
+				index.entries.add(new Entry(fields[0], fields[1], tags));
+			}
+		}
+		return index;
+	}
+
+	/*
+	 * Returns the tests with any of the tags that are in any of the packages. A null or empty filter
+	 * matches every test.
+	 */
+	public ArrayList<Entry> select(String[] tags, String[] packages) {
+		ArrayList<Entry> selected = new ArrayList<Entry>();
+		for (Entry entry : entries) {
+			if (entry.matches(tags, packages)) {
+				selected.add(entry);
+			}
+		}
+		return selected;
+	}
+
+	/*
+	 * Loads the classes for the given tests, without initializing them. Tests whose classes can't be found
+	 * (the index is out of date) are skipped with a warning.
+	 */
+	public static ArrayList<Class> loadClasses(List<Entry> entries) {
+		ArrayList<Class> classes = new ArrayList<Class>();
+		for (Entry entry : entries) {
+			try {
+				classes.add(Class.forName(entry.getClassName(), false, TestIndex.class.getClassLoader()));
+			} catch (ClassNotFoundException e) {
+				System.out.println("Test in index not found, skipping: " + entry.getClassName());
+			}
+		}
+		return classes;
+	}
+
+	/*
+	 * Returns true if the test class has any of the tags and is in any of the packages. Reads the class's
+	 * annotations directly, for tests that were listed by hand rather than taken from the index.
+	 */
+	public static boolean matches(Class test, String[] tags, String[] packages) {
+		@SuppressWarnings("unchecked")
+		TestTags testTags = (TestTags) test.getAnnotation(TestTags.class);
+		String name = test.getName();
+		int lastDot = name.lastIndexOf('.');
+		String pkg = (lastDot < 0 ? "" : name.substring(0, lastDot));
+		if (pkg.equals("Tests")) {
+			pkg = "";
+		}
+		else if (pkg.startsWith("Tests.")) {
+			pkg = pkg.substring(6);
+		}
+		return new Entry(name, pkg, (testTags == null ? new String[0] : testTags.value())).matches(tags, packages);
+	}
+
+	/* Getters */
+	public int size() { return entries.size(); }
+
+	/*
+	 * One test in the index
+	 */
+	public static class Entry {
+		private String className;   // Fully qualified class name, such as Tests.Control.ControlPass
+		private String category;    // Package without the Tests. prefix, such as Control. Empty for Tests itself.
+		private String[] tags;      // Tags from @TestTags
+
+		/* Constructor */
+		public Entry(String className, String category, String[] tags) {
+			this.className = className;
+			this.category = category;
+			this.tags = tags;
+		}
+
+		/*
+		 * Returns true if the test has any of the tags and is in any of the packages, or below them.
+		 * Packages can be given with or without the Tests. prefix. A null or empty filter matches.
+		 */
+		public boolean matches(String[] tagFilter, String[] packageFilter) {
+			if (tagFilter != null && tagFilter.length > 0
+					&& Collections.disjoint(Arrays.asList(tagFilter), Arrays.asList(tags))) {
+				return false;
+			}
+			if (packageFilter == null || packageFilter.length == 0) {
+				return true;
+			}
+			for (String pkg : packageFilter) {
+				String wanted = (pkg.startsWith("Tests.") ? pkg.substring(6) : pkg);
+				if (wanted.equals("Tests") || category.equals(wanted) || category.startsWith(wanted + ".")) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/* Getters */
+		public String getClassName() { return className; }
+	}
+}
@@ -0,0 +1,64 @@
+package Tests;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/*
+ * TestLogBuffer
+ *
+ * Append-only buffer for the entries of a test log. Entries are kept in memory until the buffer
+ * holds windowSize characters, then written out to the test log file and flushed. This keeps memory
+ * use bounded for long tests, and means most of the log is already on disk if the JVM dies mid-test.
+ */
+
+public class TestLogBuffer {
+
+	public final static int DEFAULT_WINDOW_SIZE = 8192; // Default # of characters kept before writing out
+
+	private Writer out;            // Where entries are written, normally the test log file
+	private StringBuilder window;  // Entries that haven't been written out yet
+	private int windowSize;        // # of characters to hold before writing out
+	private long length = 0;       // Total # of characters appended
+
+	/* Constructors */
+	public TestLogBuffer(Writer out) {
+		this(out, DEFAULT_WINDOW_SIZE);
+	}
+
+	public TestLogBuffer(Writer out, int windowSize) {
+		this.out = out;
+		this.windowSize = windowSize;
+		this.window = new StringBuilder(windowSize);
+	}
+
+	/*
+	 * Adds an entry to the end of the log. Writes the buffered entries out once the window is full.
+	 */
+	public void append(String entry) {
+		window.append(entry);
+		length += entry.length();
+		if (window.length() >= windowSize) {
+			flush();
+		}
+	}
+
+	/*
+	 * Writes all buffered entries to the test log file and flushes it.
+	 */
+	public void flush() {
+		try {
+			out.write(window.toString());
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write to test log", e);
+		}
+		window.setLength(0);
+	}
+
+	/* Returns the entries that haven't been written out yet */
+	public String getWindow() { return window.toString(); }
+
+	/* Returns the total # of characters appended, including those already written out */
+	public long length() { return length; }
+}
@@ -0,0 +1,57 @@
+package Tests;
+
+/*
+ * TestRecord
+ *
+ * Extra information about a single test class run, beyond what JUnit's Result holds. The runner
+ * creates a record and binds it to the thread running the test; MyTest fills it in from that thread,
+ * and the runner attaches it to the test's NamedResult afterwards.
+ */
+
+public class TestRecord {
+
+	private static ThreadLocal<TestRecord> current = new ThreadLocal<TestRecord>(); // Record for the test on this thread
+
+	private String name;              // Name of the test, same as the NamedResult's
+	private boolean warning = false;  // True if the test added a warning
+	private String logFile;           // Path of the test log the test wrote, if it got that far
+	private CommandLatency commandLatency; // Time taken by each WebDriver command the test sent, if any
+	private PhaseTimer phases;        // Time spent in each phase of the test, if it got that far
+
+	/* Constructor */
+	public TestRecord(String name) {
+		this.name = name;
+	}
+
+	/*
+	 * Creates a record for the named test and binds it to the current thread
+	 */
+	public static TestRecord begin(String name) {
+		TestRecord record = new TestRecord(name);
+		current.set(record);
+		return record;
+	}
+
+	/* Unbinds the current thread's record */
+	public static void end() {
+		current.remove();
+	}
+
+	/* Returns the record bound to the current thread, or null if the test wasn't started by a runner */
+	public static TestRecord current() {
+		return current.get();
+	}
+
+	/* Setters */
+	public void setWarning(boolean warning) { this.warning = warning; }
+	public void setLogFile(String logFile) { this.logFile = logFile; }
+	public void setCommandLatency(CommandLatency commandLatency) { this.commandLatency = commandLatency; }
+	public void setPhases(PhaseTimer phases) { this.phases = phases; }
+
+	/* Getters */
+	public String getName() { return name; }
+	public boolean hadWarning() { return warning; }
+	public String getLogFile() { return logFile; }
+	public CommandLatency getCommandLatency() { return commandLatency; }
+	public PhaseTimer getPhases() { return phases; }
+}
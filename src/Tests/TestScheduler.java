@@ -0,0 +1,125 @@
+package Tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/*
+ * TestScheduler
+ *
+ * Orders the test list before a run, using each test's recorded durations and outcomes from the run
+ * history. Policies:
+ *
+ *   list           Tests run in the order they were added, same as before
+ *   longest-first  Longest tests start first, so a slow test can't start last and stretch a parallel
+ *                  run. Uses each test's median time taken; tests with no history are given the mean
+ *                  of the others.
+ *   failed-first   Tests that failed last run start first, then tests by how often they have failed
+ *                  recently, quickest first. Finds regressions as early as possible.
+ *
+ * Ties keep list order. Without a history every policy keeps list order.
+ */
+
+@SuppressWarnings("rawtypes")
+public class TestScheduler {
+
+	public enum Policy {
+		LIST("list"),
+		LONGEST_FIRST("longest-first"),
+		FAILED_FIRST("failed-first");
+
+		private String label; // Name used on the command line and in ResultsLogFull
+
+		Policy(String label) {
+			this.label = label;
+		}
+
+		public String getLabel() { return label; }
+
+		/* Finds a policy by its label, or returns null if there is none */
+		public static Policy forLabel(String label) {
+			for (Policy policy : values()) {
+				if (policy.label.equalsIgnoreCase(label.trim())) {
+					return policy;
+				}
+			}
+			return null;
+		}
+	}
+
+	private final static int WINDOW = 20; // Number of recent runs used for each test's estimates
+
+	private Policy policy;                // Policy used to order tests
+	private RunHistory history;           // Recorded runs, may be null
+	private int known = 0;                // # of tests with history in the last call to order()
+
+	/* Constructor */
+	public TestScheduler(Policy policy, RunHistory history) {
+		this.policy = policy;
+		this.history = history;
+	}
+
+	/*
+	 * Returns a copy of the tests in the order they should be run
+	 */
+	public ArrayList<Class> order(ArrayList<Class> tests) {
+		ArrayList<Class> ordered = new ArrayList<Class>(tests);
+		known = 0;
+		if (history == null || policy == Policy.LIST) {
+			return ordered;
+		}
+
+		// Estimates the time taken by each test, from its median over recent runs
+		HashMap<Class, Long> estimates = new HashMap<Class, Long>();
+		long total = 0;
+		for (Class test : tests) {
+			long median = history.getDurationPercentile(TestExecutor.getTestName(test), 50, WINDOW);
+			if (median >= 0) {
+				estimates.put(test, median);
+				total += median;
+				known++;
+			}
+		}
+		long mean = (known == 0 ? 0 : total / known);
+		for (Class test : tests) {
+			if (!estimates.containsKey(test)) {
+				estimates.put(test, mean);
+			}
+		}
+
+		// Collections.sort is stable, so ties keep list order
+		Comparator<Class> byDuration = Comparator.comparing((Class test) -> estimates.get(test));
+		if (policy == Policy.LONGEST_FIRST) {
+			Collections.sort(ordered, byDuration.reversed());
+		}
+		else {
+			HashMap<Class, Boolean> failedLast = new HashMap<Class, Boolean>();
+			HashMap<Class, Double> failureRates = new HashMap<Class, Double>();
+			for (Class test : tests) {
+				String testName = TestExecutor.getTestName(test);
+				failedLast.put(test, history.failedLastRun(testName));
+				failureRates.put(test, Math.max(0, history.getFailureRate(testName, WINDOW)));
+			}
+			Comparator<Class> failedFirst = Comparator.comparing((Class test) -> !failedLast.get(test));
+			Collections.sort(ordered, failedFirst
+					.thenComparing(Comparator.comparing((Class test) -> failureRates.get(test)).reversed())
+					.thenComparing(byDuration));
+		}
+		return ordered;
+	}
+
+	/* Returns a one line description of the last ordering, for the console and ResultsLogFull */
+	public String getSummary(int tests) {
+		if (policy == Policy.LIST) {
+			return "Test order: list";
+		}
+		if (history == null) {
+			return "Test order: list (" + policy.getLabel() + " needs the run history)";
+		}
+		return "Test order: " + policy.getLabel() + ", " + known + " of " + tests + " tests have history";
+	}
+
+	/* Getters */
+	public Policy getPolicy() { return policy; }
+}
@@ -0,0 +1,176 @@
+package Tests;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/*
+ * TestSharder
+ *
+ * Splits the test list into shards so a run can be spread across several machines, each running
+ * one shard with --shard i/N. Every machine works out the same split on its own:
+ *
+ *   hash      The default. Each test goes to shard (hash of its name mod N), which only depends on
+ *             the test's name, so every machine agrees without sharing anything.
+ *   duration  When a shared run history is given with --history, tests are handed out longest first
+ *             to whichever shard has the least estimated time so far (tests with no history get the
+ *             mean estimate). Shards finish in roughly the same time, but only if every machine reads
+ *             exactly the same history file, such as a copy of the last nightly's.
+ *
+ * The manifest written for each shard records the history's record count and content hash, so
+ * ResultsLogMerger can spot shards that split the tests from different histories. Shards don't write
+ * their results back to the shared history, which would make the copies differ.
+ *
+ * Shards are numbered from 1.
+ */
+
+@SuppressWarnings("rawtypes")
+public class TestSharder {
+
+	private final static int WINDOW = 20; // Number of recent runs used for each test's estimate
+
+	private int index;                    // This machine's shard, from 1 to count
+	private int count;                    // Total # of shards
+	private RunHistory history;           // Shared recorded runs, null to split by hash
+	private String strategy;              // "duration" or "hash", set by select()
+	private int historyRecords = 0;       // # of records in the history when select() was called
+	private long historyHash = 0;         // Content hash of the history when select() was called
+	private int total = 0;                // # of tests across every shard
+	private ArrayList<Class> selected     // Tests in this shard, in list order
+		= new ArrayList<Class>();
+	private long[] loads;                 // Estimated time for each shard in milliseconds, duration only
+
+	/*
+	 * Constructor. history should only be given if every machine reads the same copy of it, and may be
+	 * null to split by hash.
+	 */
+	public TestSharder(int index, int count, RunHistory history) {
+		this.index = index;
+		this.count = count;
+		this.history = history;
+	}
+
+	/*
+	 * Returns the tests in this shard, in list order
+	 */
+	public ArrayList<Class> select(ArrayList<Class> tests) {
+		total = tests.size();
+		int[] assigned = new int[tests.size()];
+
+		// Estimates the time taken by each test, from its median over recent runs
+		long[] estimates = new long[tests.size()];
+		int known = 0;
+		long sum = 0;
+		for (int i = 0; i < tests.size(); i++) {
+			estimates[i] = (history == null ? -1
+					: history.getDurationPercentile(TestExecutor.getTestName(tests.get(i)), 50, WINDOW));
+			if (estimates[i] >= 0) {
+				known++;
+				sum += estimates[i];
+			}
+		}
+
+		if (history == null) {
+			strategy = "hash";
+			loads = null;
+			for (int i = 0; i < tests.size(); i++) {
+				long hash = RunHistory.hash(TestExecutor.getTestName(tests.get(i)));
+				assigned[i] = (int) Long.remainderUnsigned(hash, count);
+			}
+		}
+		else {
+			// With no times at all, every test counts the same, so shards get the same # of tests
+			strategy = "duration";
+			historyRecords = history.size();
+			historyHash = history.getContentHash();
+			long mean = (known == 0 ? 1 : sum / known);
+			for (int i = 0; i < tests.size(); i++) {
+				if (estimates[i] < 0) {
+					estimates[i] = mean;
+				}
+			}
+
+			// Longest first, ties broken by name so the order doesn't depend on list order
+			ArrayList<Integer> order = new ArrayList<Integer>();
+			for (int i = 0; i < tests.size(); i++) {
+				order.add(i);
+			}
+			Collections.sort(order, Comparator.comparing((Integer i) -> -estimates[i])
+					.thenComparing((Integer i) -> TestExecutor.getTestName(tests.get(i))));
+
+			// Each test goes to the shard with the least time so far, lowest shard on ties
+			loads = new long[count];
+			for (int i : order) {
+				int least = 0;
+				for (int shard = 1; shard < count; shard++) {
+					if (loads[shard] < loads[least]) {
+						least = shard;
+					}
+				}
+				assigned[i] = least;
+				loads[least] += estimates[i];
+			}
+		}
+
+		selected.clear();
+		for (int i = 0; i < tests.size(); i++) {
+			if (assigned[i] == index - 1) {
+				selected.add(tests.get(i));
+			}
+		}
+		return selected;
+	}
+
+	/* Returns a one line description of the shard, for the console */
+	public String getSummary() {
+		return "Shard " + index + " of " + count + ": " + selected.size() + " of " + total
+			 + " tests, split by " + strategy
+			 + (history == null ? ""
+					: " from " + historyRecords + " history records (hash " + Long.toHexString(historyHash) + ")");
+	}
+
+	/* Returns the name of the shard's directory, under the TestLogs directory */
+	public String getDirectoryName() {
+		return "Shard" + index + "of" + count;
+	}
+
+	/*
+	 * Writes a manifest of the shard as JSON, so the shards of a run can be checked and merged
+	 */
+	public void writeManifest(String path) throws IOException {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"shard\":").append(index)
+			.append(",\"shards\":").append(count)
+			.append(",\"strategy\":").append(Json.quote(strategy))
+			.append(",\"totalTests\":").append(total)
+			.append(",\"shardTests\":").append(selected.size());
+		if (history != null) {
+			json.append(",\"historyRecords\":").append(historyRecords)
+				.append(",\"historyHash\":").append(Json.quote(Long.toHexString(historyHash)));
+		}
+		if (loads != null) {
+			json.append(",\"estimatedMillis\":[");
+			for (int shard = 0; shard < count; shard++) {
+				json.append(shard == 0 ? "" : ",").append(loads[shard]);
+			}
+			json.append("]");
+		}
+		json.append(",\"tests\":[");
+		for (int i = 0; i < selected.size(); i++) {
+			json.append(i == 0 ? "" : ",").append(Json.quote(TestExecutor.getTestName(selected.get(i))));
+		}
+		json.append("]}\n");
+
+		AsyncLogWriter manifest = LogOutputService.get().open(path, StandardCharsets.UTF_8);
+		manifest.write(json.toString());
+		manifest.sync();
+		manifest.close();
+	}
+
+	/* Getters */
+	public int getIndex() { return index; }
+	public int getCount() { return count; }
+	public ArrayList<Class> getSelected() { return selected; }
+}
@@ -0,0 +1,23 @@
+package Tests;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+ * TestTags
+ *
+ * Tags a test class, so it can be selected with --tags along with every other test sharing a tag:
+ *
+ *   @TestTags({ "smoke", "login" })
+ *   public class LoginTest extends MyTest { ... }
+ *
+ * Tags are written into the test index (see TestIndex) when the tests are compiled.
+ */
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface TestTags {
+	String[] value();
+}
@@ -0,0 +1,21 @@
+package Tests;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+ * UseDriverProfile
+ *
+ * Chooses the DriverProfile a test class runs with, whatever profile the rest of the run uses:
+ *
+ *   @UseDriverProfile(DriverProfile.FAITHFUL)
+ *   public class ChartTest extends MyTest { ... }
+ */
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface UseDriverProfile {
+	DriverProfile value();
+}